@@ -0,0 +1,106 @@
+package com.sctdroid.app.uikit;
+
+import android.graphics.Paint;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Ticks of a value axis at "nice" steps, 1, 2, 2.5 or 5 times a power of ten, with their labels
+ * and label widths. The step is the smallest nice one giving at most the wanted number of ticks.
+ * Labels are only formatted and measured when the ticks change, not when the range moves without
+ * changing them, e.g. during a range animation.
+ */
+
+final class AxisTicks {
+    private float[] mValues = new float[0];
+    private String[] mLabels = new String[0];
+    private float[] mWidths = new float[0];
+    private float mMaxWidth;
+    private int mCount;
+
+    private double mFirst = Double.NaN;
+    private double mStep = Double.NaN;
+
+    /**
+     * Recomputes the ticks of [min, max].
+     * @param maxTicks maximum number of ticks wanted
+     * @return true if the ticks changed, labels then need {@link #measure(Paint)}
+     */
+    boolean update(float min, float max, int maxTicks) {
+        if (!(max > min) || maxTicks < 2) {
+            boolean changed = mCount != 0;
+            mCount = 0;
+            mFirst = mStep = Double.NaN;
+            return changed;
+        }
+        double step = niceStep((max - min) / (maxTicks - 1));
+        double first = Math.ceil(min / step) * step;
+        int count = (int) Math.floor((max - first) / step + 1e-9) + 1;
+        if (first == mFirst && step == mStep && count == mCount) {
+            return false;
+        }
+        mFirst = first;
+        mStep = step;
+        mCount = count;
+        if (mValues.length < count) {
+            mValues = new float[count];
+            mLabels = new String[count];
+            mWidths = new float[count];
+        }
+        Arrays.fill(mLabels, null);
+        // enough decimals to tell ticks apart, one more for steps of 2.5
+        double exponent = Math.floor(Math.log10(step));
+        int decimals = Math.max(0, (int) -exponent + (step / Math.pow(10, exponent) == 2.5 ? 1 : 0));
+        String format = "%." + decimals + "f";
+        for (int i = 0; i < count; i++) {
+            // snapped to the step against accumulated error, adding 0 turns -0 into 0
+            double value = Math.rint(first / step + i) * step + 0.0;
+            mValues[i] = (float) value;
+            mLabels[i] = String.format(Locale.US, format, value);
+        }
+        return true;
+    }
+
+    /**
+     * Measures the labels with a paint.
+     */
+    void measure(Paint paint) {
+        mMaxWidth = 0;
+        for (int i = 0; i < mCount; i++) {
+            mWidths[i] = paint.measureText(mLabels[i]);
+            mMaxWidth = Math.max(mMaxWidth, mWidths[i]);
+        }
+    }
+
+    int getCount() {
+        return mCount;
+    }
+
+    float getValue(int index) {
+        return mValues[index];
+    }
+
+    String getLabel(int index) {
+        return mLabels[index];
+    }
+
+    float getWidth(int index) {
+        return mWidths[index];
+    }
+
+    float getMaxWidth() {
+        return mMaxWidth;
+    }
+
+    /**
+     * @return the smallest of 1, 2, 2.5 and 5 times a power of ten not less than x
+     */
+    static double niceStep(double x) {
+        double exponent = Math.floor(Math.log10(x));
+        double power = Math.pow(10, exponent);
+        double fraction = x / power;
+        double nice = fraction <= 1 ? 1 : fraction <= 2 ? 2 : fraction <= 2.5 ? 2.5 : fraction <= 5 ? 5 : 10;
+        return nice * power;
+    }
+}
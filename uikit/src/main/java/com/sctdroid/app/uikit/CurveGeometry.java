@@ -0,0 +1,177 @@
+package com.sctdroid.app.uikit;
+
+import android.graphics.Path;
+
+/**
+ * Arithmetic of the view path shared by {@link CurveView} and its layouts computed off the UI thread:
+ * culling points to the viewport, clamping the scroll offset, projecting levels to y and
+ * placing texts. Kept free of view state so it can be benchmarked on the JVM.
+ */
+
+final class CurveGeometry {
+    /**
+     * points outside the viewport but within this many units are still drawn,
+     * so texts centered on a point just off-screen are not clipped abruptly
+     */
+    static final int VISIBLE_MARGIN = 2;
+
+    /**
+     * edges of the scroll range, see {@link #getEdgeCrossed(int, int, int)}
+     */
+    static final int EDGE_NONE = 0;
+    static final int EDGE_START = 1;
+    static final int EDGE_END = 2;
+
+    private CurveGeometry() {
+    }
+
+    /**
+     * @param left content x of the left edge of the viewport
+     * @param unitWidth horizontal distance between two points, greater than 0
+     * @return first index of points to draw, may be past the last point
+     */
+    static int getFirstVisible(float left, float unitWidth) {
+        return Math.max(0, (int) Math.floor(left / unitWidth) - VISIBLE_MARGIN);
+    }
+
+    /**
+     * @param right content x of the right edge of the viewport
+     * @param unitWidth horizontal distance between two points, greater than 0
+     * @return last index of points to draw
+     */
+    static int getLastVisible(float right, float unitWidth, int count) {
+        return Math.min(count - 1, (int) Math.ceil(right / unitWidth) + VISIBLE_MARGIN);
+    }
+
+    /**
+     * @param pathStart first index of the path window, negative once points before it were
+     *                  removed and the path moved along
+     * @return first index of points in the path window that still exist
+     */
+    static int getFirstInWindow(int pathStart) {
+        return Math.max(0, pathStart);
+    }
+
+    /**
+     * @param pathEnd last index of the path window
+     * @return last index of points in the path window that still exist
+     */
+    static int getLastInWindow(int pathEnd, int count) {
+        return Math.min(count - 1, pathEnd);
+    }
+
+    /**
+     * @param offset offset to scroll horizontally, normally not greater than 0
+     * @param contentWidth width of the curve with its padding
+     * @param width width of the view
+     * @return offset within the scrollable range, 0 if the curve fits in the view
+     */
+    static int clampOffset(int offset, int contentWidth, int width) {
+        if (contentWidth < width) {
+            return 0;
+        }
+        return Math.max(width - contentWidth, Math.min(0, offset));
+    }
+
+    /**
+     * @param index index of a point, clamped to the points
+     * @param paddingStart content padding before the first point
+     * @param maxScrollX largest scrollX, with the last point in view
+     * @return scrollX putting the point in the middle of the view, or as close as the scroll range allows
+     */
+    static int getScrollXToCenter(int index, int count, float unitWidth, int paddingStart, int width, int maxScrollX) {
+        index = Math.max(0, Math.min(index, count - 1));
+        int scrollX = (int) (index * unitWidth) + paddingStart - width / 2;
+        return Math.max(0, Math.min(scrollX, maxScrollX));
+    }
+
+    /**
+     * @param oldX scrollX of the previous fling step
+     * @param x scrollX of this step, beyond the range while overflinging
+     * @param range largest scrollX
+     * @return the edge a fling passed in this step, whose glow absorbs the velocity, or {@link #EDGE_NONE}
+     */
+    static int getEdgeCrossed(int oldX, int x, int range) {
+        if (x < 0 && oldX >= 0) {
+            return EDGE_START;
+        } else if (x > range && oldX <= range) {
+            return EDGE_END;
+        }
+        return EDGE_NONE;
+    }
+
+    /**
+     * @param height height of the content in pixels
+     * @return pixels per level, fractional so that ranges larger than the height don't collapse to 0,
+     * 0 for an empty range, drawing all points at the bottom
+     */
+    static float getPixelsPerLevel(int height, float minLevel, float maxLevel) {
+        // in double, the difference of two large floats loses precision
+        double range = (double) maxLevel - minLevel;
+        return range > 0 ? (float) (height / range) : 0;
+    }
+
+    /**
+     * Projects the levels of points in [from, to) to y coordinates.
+     * @param bottomY y of minLevel
+     * @param y receives the y of point i at index i
+     */
+    static void project(DataSource source, int from, int to, float bottomY, float minLevel, float pixelsPerLevel, float[] y) {
+        for (int i = from; i < to; i++) {
+            y[i] = bottomY - (source.getLevel(i) - minLevel) * pixelsPerLevel;
+        }
+    }
+
+    /**
+     * Resets a path to the line through projected points in [start, end], a polyline or
+     * monotone cubic segments.
+     * @param y y of every point
+     * @param count number of points in y, the neighbours of start and end shape smoothed segments
+     */
+    static void buildPath(Path path, float[] y, int count, int start, int end, float unitWidth, boolean smooth) {
+        path.rewind();
+        path.moveTo(start * unitWidth, y[start]);
+        for (int i = start + 1; i <= end; i++) {
+            if (smooth) {
+                float m0 = MonotoneCubic.tangent(i > 1 ? y[i - 2] : Float.NaN, y[i - 1], y[i]);
+                float m1 = MonotoneCubic.tangent(y[i - 1], y[i], i + 1 < count ? y[i + 1] : Float.NaN);
+                MonotoneCubic.cubicTo(path, i * unitWidth, y[i - 1], m0, y[i], m1, unitWidth);
+            } else {
+                path.lineTo(i * unitWidth, y[i]);
+            }
+        }
+    }
+
+    /**
+     * @param width width of the text
+     * @param gravity horizontal gravity of the text, a {@link CurveView.Gravity} flag
+     * @return x of the text's start relative to its point
+     */
+    static int getTextOffsetX(float width, int gravity) {
+        int intWidth = (int) width;
+        int offset = 0;
+        if ((gravity & CurveView.Gravity.CENTER_HORIZONTAL) != 0) {
+            offset = - intWidth / 2;
+        } else if ((gravity & CurveView.Gravity.START) != 0) {
+            offset = - intWidth;
+        }
+        return offset;
+    }
+
+    /**
+     * @param ascent ascent of the font, negative
+     * @param descent descent of the font
+     * @param gravity vertical gravity of the text, a {@link CurveView.Gravity} flag
+     * @return y of the text's baseline relative to its point
+     */
+    static int getTextOffsetY(float ascent, float descent, int gravity) {
+        int height = (int) (descent - ascent);
+        int offset = (int) (descent + ascent) / 2;
+        if ((gravity & CurveView.Gravity.CENTER_VERTICAL) != 0) {
+            offset += height / 2;
+        } else if ((gravity & CurveView.Gravity.BOTTOM) != 0) {
+            offset += height;
+        }
+        return offset;
+    }
+}
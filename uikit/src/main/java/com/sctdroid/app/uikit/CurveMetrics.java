@@ -0,0 +1,142 @@
+package com.sctdroid.app.uikit;
+
+/**
+ * Counters of the last frame and the last data change of a {@link CurveView}, plus histograms of
+ * frame and data change durations over all of them, see {@link CurveView#setMetricsListener(Listener)}.
+ * The same instance is updated and passed to the listener every time, so reporting allocates nothing,
+ * copy values out to keep them.
+ */
+
+public final class CurveMetrics {
+    public interface Listener {
+        /**
+         * Called on the UI thread after each frame.
+         */
+        void onFrame(CurveMetrics metrics);
+
+        /**
+         * Called on the UI thread after each data change has been applied.
+         */
+        void onDataChanged(CurveMetrics metrics);
+    }
+
+    long mFrameNanos;
+    int mVisiblePoints;
+    int mPathRebuilds;
+    int mTextMeasurements;
+    int mTextCacheHits;
+    int mTileCacheHits;
+    int mTileCacheMisses;
+
+    long mDataChangeNanos;
+    int mAdapterCalls;
+
+    private final LatencyHistogram mFrameTimes = new LatencyHistogram();
+    private final LatencyHistogram mDataChangeTimes = new LatencyHistogram();
+
+    void beginFrame() {
+        mVisiblePoints = 0;
+        mPathRebuilds = 0;
+        mTextMeasurements = 0;
+        mTextCacheHits = 0;
+        mTileCacheHits = 0;
+        mTileCacheMisses = 0;
+    }
+
+    void endFrame(long nanos) {
+        mFrameNanos = nanos;
+        mFrameTimes.record(nanos);
+    }
+
+    void endDataChange(long nanos, int adapterCalls) {
+        mDataChangeNanos = nanos;
+        mAdapterCalls = adapterCalls;
+        mDataChangeTimes.record(nanos);
+    }
+
+    /**
+     * @return duration of the last onDraw in nanoseconds
+     */
+    public long getFrameNanos() {
+        return mFrameNanos;
+    }
+
+    /**
+     * @return points in the visible range of the last frame
+     */
+    public int getVisiblePoints() {
+        return mVisiblePoints;
+    }
+
+    /**
+     * @return paths built from scratch in the last frame, of all series
+     */
+    public int getPathRebuilds() {
+        return mPathRebuilds;
+    }
+
+    /**
+     * @return texts measured in the last frame, that is, missed by the text caches
+     */
+    public int getTextMeasurements() {
+        return mTextMeasurements;
+    }
+
+    /**
+     * @return texts whose widths were found in the text caches in the last frame
+     */
+    public int getTextCacheHits() {
+        return mTextCacheHits;
+    }
+
+    /**
+     * @return tiles drawn from the render cache in the last frame
+     */
+    public int getTileCacheHits() {
+        return mTileCacheHits;
+    }
+
+    /**
+     * @return tiles rendered in the last frame
+     */
+    public int getTileCacheMisses() {
+        return mTileCacheMisses;
+    }
+
+    /**
+     * @return duration of applying the last data change in nanoseconds, measured on the executor for async layouts
+     */
+    public long getDataChangeNanos() {
+        return mDataChangeNanos;
+    }
+
+    /**
+     * @return calls to the adapter made by the last data change, 0 for data sources
+     */
+    public int getAdapterCalls() {
+        return mAdapterCalls;
+    }
+
+    /**
+     * @return durations of all frames since the listener was set, in nanoseconds
+     */
+    public LatencyHistogram getFrameTimes() {
+        return mFrameTimes;
+    }
+
+    /**
+     * @return durations of all data changes since the listener was set, in nanoseconds
+     */
+    public LatencyHistogram getDataChangeTimes() {
+        return mDataChangeTimes;
+    }
+
+    void reset() {
+        beginFrame();
+        mFrameNanos = 0;
+        mDataChangeNanos = 0;
+        mAdapterCalls = 0;
+        mFrameTimes.reset();
+        mDataChangeTimes.reset();
+    }
+}
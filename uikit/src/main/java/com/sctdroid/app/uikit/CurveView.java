@@ -3,24 +3,39 @@ package com.sctdroid.app.uikit;
 import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.CornerPathEffect;
+import android.graphics.LinearGradient;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.graphics.drawable.Drawable;
+import android.graphics.PathEffect;
+import android.graphics.Picture;
+import android.graphics.Shader;
+import android.os.Build;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Trace;
 import android.text.TextPaint;
 import android.text.style.TextAppearanceSpan;
 import android.util.AttributeSet;
-import android.util.SparseArray;
+import android.util.Log;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.VelocityTracker;
 import android.view.View;
-import android.view.animation.DecelerateInterpolator;
+import android.view.ViewConfiguration;
+import android.widget.EdgeEffect;
+import android.widget.OverScroller;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * Created by lixindong on 9/23/16.
@@ -55,6 +70,10 @@ public class CurveView extends View implements DataObserver {
     protected int mAxisTextColor;
 
     private int mCorner;
+    private int mSmoothing = SMOOTHING_CORNER;
+    private boolean mFillArea = false;
+    private int mFillTopColor;
+    private int mFillBottomColor;
 
     protected int mContentPaddingStart;
     protected int mContentPaddingEnd;
@@ -89,12 +108,29 @@ public class CurveView extends View implements DataObserver {
     protected Paint mContentPaint;
     protected Paint mBackgroundPaint;
     protected TextPaint mXAxisPaint;
+    protected TextPaint mYAxisPaint;
+    protected Paint mGridPaint;
+    /**
+     * background of the y axis labels, so the curve scrolling under them doesn't cross their text
+     */
+    private Paint mYLabelBackgroundPaint;
     protected TextPaint mDotTextPaint;
-    private Drawable mBackground;
+    private TextMeasureCache mXAxisTextCache;
+    private TextMeasureCache mDotTextCache;
 
     protected int mOffsetX = 0;
 
     protected Path mContentPath;
+    /**
+     * last segment of {@link #mContentPath} with {@link #SMOOTHING_MONOTONE}, when the path reaches
+     * the last point. Its shape depends on the next point, so it is kept apart and replaced on append.
+     */
+    private final Path mContentTail = new Path();
+    /**
+     * area between {@link #mContentPath} and the x axis, derived from it whenever it is rebuilt
+     */
+    private final Path mContentFill = new Path();
+    private boolean mContentFillDirty = true;
     protected CornerPathEffect mCornerPathEffect;
 
     private void init() {
@@ -104,22 +140,51 @@ public class CurveView extends View implements DataObserver {
         mContentPaint.setStyle(Paint.Style.STROKE);
         mContentPaint.setColor(mContentColor);
         mContentPaint.setStrokeWidth(mStrokeWidth);
-        mContentPaint.setPathEffect(mCornerPathEffect);
+        mContentPaint.setPathEffect(mSmoothing == SMOOTHING_CORNER ? mCornerPathEffect : null);
 
-        mBackgroundPaint = new Paint();
-//        mBackgroundPaint.setColor(mFillColor);
+        // fills the area under the curve, see setAreaFillEnabled
+        mBackgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mBackgroundPaint.setStyle(Paint.Style.FILL);
+        // rounded the same as the stroke, so the fill doesn't stick out of it at corners
+        mBackgroundPaint.setPathEffect(mContentPaint.getPathEffect());
 
         mXAxisPaint = new TextPaint();
         mXAxisPaint.setColor(mAxisTextColor);
         mXAxisPaint.setTextSize(mAxisTextSize);
 
+        mYAxisPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        mYAxisPaint.setColor(mAxisTextColor);
+        mYAxisPaint.setTextSize(mAxisTextSize);
+
+        mGridPaint = new Paint();
+        mGridPaint.setColor((mAxisTextColor & 0x00ffffff) | 0x33000000);
+
+        mYLabelBackgroundPaint = new Paint();
+        mYLabelBackgroundPaint.setStyle(Paint.Style.FILL);
+        mYLabelBackgroundPaint.setColor(mFillColor);
+
         mDotTextPaint = new TextPaint();
         mDotTextPaint.setColor(mDotTextColor);
         mDotTextPaint.setTextSize(mDotTextSize);
 
+        mXAxisTextCache = new TextMeasureCache(mXAxisPaint);
+        mDotTextCache = new TextMeasureCache(mDotTextPaint);
+
         mContentPath = new Path();
-        //        mMaxVelocity = ViewConfiguration.get(getContext()).getScaledMaximumFlingVelocity();
-        mMaxVelocity = 3000;
+
+        ViewConfiguration configuration = ViewConfiguration.get(getContext());
+        mMaxVelocity = configuration.getScaledMaximumFlingVelocity();
+        mMinVelocity = configuration.getScaledMinimumFlingVelocity();
+        mOverflingDistance = configuration.getScaledOverflingDistance();
+        mTouchSlop = configuration.getScaledTouchSlop();
+        mScroller = new OverScroller(getContext());
+        mScaleDetector = new ScaleGestureDetector(getContext(), mScaleListener);
+        mEdgeGlowStart = new EdgeEffect(getContext());
+        mEdgeGlowEnd = new EdgeEffect(getContext());
+
+        mHighlightPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mHighlightPaint.setColor(mContentColor);
+        mHighlightPaint.setStrokeWidth(Math.max(1, mStrokeWidth / 2));
     }
 
     private void initAttrs(Context context, AttributeSet attrs) {
@@ -137,6 +202,10 @@ public class CurveView extends View implements DataObserver {
             mAxisTextColor = a.getColor(R.styleable.Curve_axisTextColor, Color.BLACK);
 
             mCorner = a.getDimensionPixelSize(R.styleable.Curve_corner, 0);
+            mSmoothing = a.getInt(R.styleable.Curve_smoothing, SMOOTHING_CORNER);
+            mFillArea = a.getBoolean(R.styleable.Curve_fillArea, false);
+            mFillTopColor = a.getColor(R.styleable.Curve_fillTopColor, (mContentColor & 0x00ffffff) | 0x66000000);
+            mFillBottomColor = a.getColor(R.styleable.Curve_fillBottomColor, mContentColor & 0x00ffffff);
 
             mContentPaddingStart = a.getDimensionPixelSize(R.styleable.Curve_contentPaddingStart, 0);
             mContentPaddingEnd = a.getDimensionPixelSize(R.styleable.Curve_contentPaddingEnd, 0);
@@ -154,238 +223,2598 @@ public class CurveView extends View implements DataObserver {
         }
     }
 
-    @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
+    @Override
+    protected void onDraw(Canvas canvas) {
+        boolean trace = mTraceEnabled;
+        if (trace) {
+            Trace.beginSection(TRACE_DRAW);
+        }
+        mMetrics.beginFrame();
+        CurveMetrics.Listener listener = mMetricsListener;
+        long start = 0;
+        int textHits = 0;
+        int textMisses = 0;
+        if (listener != null) {
+            textHits = mXAxisTextCache.hitCount() + mDotTextCache.hitCount();
+            textMisses = mXAxisTextCache.missCount() + mDotTextCache.missCount();
+            start = System.nanoTime();
+        }
+
+        if (mTrackAllocations) {
+            drawFrameCountingAllocations(canvas);
+        } else {
+            drawFrame(canvas);
+        }
+
+        if (listener != null) {
+            long nanos = System.nanoTime() - start;
+            mMetrics.mTextCacheHits = mXAxisTextCache.hitCount() + mDotTextCache.hitCount() - textHits;
+            mMetrics.mTextMeasurements = mXAxisTextCache.missCount() + mDotTextCache.missCount() - textMisses;
+            mMetrics.endFrame(nanos);
+            listener.onFrame(mMetrics);
+        }
+        if (trace) {
+            Trace.endSection();
+        }
+    }
+
+    private void drawFrame(Canvas canvas) {
+        super.onDraw(canvas);
+
+        boolean recording = mLayerCacheEnabled && canDrawPicture(canvas);
+        if (recording) {
+            drawStaticLayer(canvas);
+        } else {
+            canvas.drawColor(mFillColor);
+        }
+
+        if (getCount() == 0) {
+            drawEdgeGlows(canvas);
+            return;
+        }
+        if (mFillArea) {
+            updateFillShader();
+        }
+        if (mShowY) {
+            drawYGrid(canvas);
+        }
+
+        float scaleX = mShowAll ? 1f : mScale;
+        float unitWidth = getBaseUnitWidth() * scaleX;
+        int lodLevel = mShowAll ? 0 : LodPyramid.levelFor(unitWidth);
+
+        computeVisibleRange(unitWidth);
+        mMetrics.mVisiblePoints = mLastVisible - mFirstVisible + 1;
+        if (mAutoRange == AUTO_RANGE_VISIBLE) {
+            updateLevelRange();
+        }
+
+        canvas.save();
+        canvas.translate(mOffsetX + mContentPaddingStart, 0);
+
+        if (mMorphing) {
+            drawMorph(canvas, unitWidth);
+            for (int i = 0, size = mSeries.size(); i < size; i++) {
+                updateSeriesPath(mSeries.get(i), unitWidth, lodLevel);
+                drawSeries(canvas, mSeries.get(i), unitWidth, lodLevel, mFirstVisible, mLastVisible);
+            }
+        } else if (mTileCache != null && !mShowAll && mAutoRange != AUTO_RANGE_VISIBLE && unitWidth > 0 && lodLevel == 0) {
+            drawTiles(canvas, unitWidth);
+            for (int i = 0, size = mSeries.size(); i < size; i++) {
+                updateSeriesPath(mSeries.get(i), unitWidth, lodLevel);
+                drawSeries(canvas, mSeries.get(i), unitWidth, lodLevel, mFirstVisible, mLastVisible);
+            }
+        } else {
+            if (mContentPath.isEmpty() || mForceUpdate || mPathUnitWidth != unitWidth
+                    || mFirstVisible < mPathStart || mLastVisible > mPathEnd) {
+                mForceUpdate = false;
+                mContentPictureDirty = true;
+                mMetrics.mPathRebuilds++;
+                if (mShowAll && unitWidth < 1) {
+                    buildDownsampledPath(unitWidth);
+                } else if (lodLevel > 0) {
+                    buildLodPath(unitWidth, lodLevel);
+                } else {
+                    buildContentPath(unitWidth);
+                }
+                mContentFillDirty = true;
+            }
+            if (mFillArea && mContentFillDirty) {
+                mContentFillDirty = false;
+                buildFillPath(mContentFill, mContentPath, mPathStart * mPathUnitWidth, mPathEnd * mPathUnitWidth);
+            }
+            for (int i = 0, size = mSeries.size(); i < size; i++) {
+                if (updateSeriesPath(mSeries.get(i), unitWidth, lodLevel)) {
+                    mContentPictureDirty = true;
+                }
+            }
+            if (recording) {
+                drawContentPicture(canvas, unitWidth, lodLevel);
+            } else {
+                drawContent(canvas, unitWidth, lodLevel, mFirstVisible, mLastVisible);
+            }
+        }
+
+        drawHighlight(canvas, unitWidth);
+
+        canvas.restore();
+        if (mShowXLine && !recording) {
+            drawXLine(canvas);
+        }
+        if (mShowY) {
+            // pinned, scrolling moves the curve under the labels
+            drawYLabels(canvas);
+        }
+        drawEdgeGlows(canvas);
+    }
+
+    private void drawXLine(Canvas canvas) {
+        canvas.drawLine(0, getHeight() - mContentPaddingBottom, getWidth(), getHeight() - mContentPaddingBottom, mContentPaint);
+    }
+
+    /**
+     * Draws the curves with their texts to a canvas translated to content coordinates.
+     * @param first first index of points whose texts are drawn
+     * @param last last index of points whose texts are drawn
+     */
+    private void drawContent(Canvas canvas, float unitWidth, int lodLevel, int first, int last) {
+        if (mFillArea) {
+            canvas.drawPath(mContentFill, mBackgroundPaint);
+        }
+        canvas.drawPath(mContentPath, mContentPaint);
+        if (!mContentTail.isEmpty()) {
+            canvas.drawPath(mContentTail, mContentPaint);
+        }
+        if (lodLevel == 0) {
+            drawDecorations(canvas, unitWidth, first, last);
+        }
+        for (int i = 0, size = mSeries.size(); i < size; i++) {
+            drawSeries(canvas, mSeries.get(i), unitWidth, lodLevel, first, last);
+        }
+    }
+
+    /**
+     * true to replay recorded pictures while scrolling instead of issuing draw commands
+     */
+    private boolean mLayerCacheEnabled = false;
+    /**
+     * background and x line, recorded once per size
+     */
+    private Picture mStaticPicture;
+    /**
+     * curves and texts of the path window, recorded once per path rebuild
+     */
+    private Picture mContentPicture;
+    private boolean mContentPictureDirty = true;
+    /**
+     * x in content coordinates of the left edge of {@link #mContentPicture}
+     */
+    private float mContentPictureLeft;
+
+    /**
+     * Records the background and the axis once, and the curves with their texts once per rebuild of
+     * the path window, so that a scroll frame only replays both recordings at a new translation,
+     * issuing no draw commands of its own. Costs recording the texts of the whole path window,
+     * which is about three screens, when the window moves.
+     *
+     * Pictures can't be drawn to hardware accelerated canvases before Android 6.0, content is drawn
+     * directly there. The render cache takes precedence when enabled.
+     * @param enabled true to enable
+     */
+    public void setLayerCacheEnabled(boolean enabled) {
+        mLayerCacheEnabled = enabled;
+        if (!enabled) {
+            mStaticPicture = null;
+            mContentPicture = null;
+        }
+        mContentPictureDirty = true;
+        invalidate();
+    }
+
+    private static boolean canDrawPicture(Canvas canvas) {
+        return !canvas.isHardwareAccelerated() || Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    private void drawStaticLayer(Canvas canvas) {
+        if (mStaticPicture == null) {
+            mStaticPicture = new Picture();
+            Canvas recording = mStaticPicture.beginRecording(getWidth(), getHeight());
+            recording.drawColor(mFillColor);
+            if (mShowXLine) {
+                drawXLine(recording);
+            }
+            mStaticPicture.endRecording();
+        }
+        canvas.drawPicture(mStaticPicture);
+    }
+
+    /**
+     * Replays {@link #mContentPicture}, recording it first if the path window or anything drawn in it changed.
+     */
+    private void drawContentPicture(Canvas canvas, float unitWidth, int lodLevel) {
+        if (mContentPicture == null || mContentPictureDirty) {
+            mContentPictureDirty = false;
+            if (mContentPicture == null) {
+                mContentPicture = new Picture();
+            }
+            // texts of points at the edges of the window reach beyond them
+            float margin = getWidth();
+            mContentPictureLeft = mPathStart * unitWidth - margin;
+            int width = (int) Math.ceil((mPathEnd - mPathStart) * unitWidth + 2 * margin);
+            Canvas recording = mContentPicture.beginRecording(width, getHeight());
+            recording.translate(-mContentPictureLeft, 0);
+            // the window starts before the first point after points were evicted from the front
+            drawContent(recording, unitWidth, lodLevel, CurveGeometry.getFirstInWindow(mPathStart),
+                    CurveGeometry.getLastInWindow(mPathEnd, getCount()));
+            mContentPicture.endRecording();
+        }
+        canvas.translate(mContentPictureLeft, 0);
+        canvas.drawPicture(mContentPicture);
+        canvas.translate(-mContentPictureLeft, 0);
+    }
+
+    private void drawEdgeGlows(Canvas canvas) {
+        if (!mEdgeGlowStart.isFinished()) {
+            int restoreCount = canvas.save();
+            canvas.rotate(270);
+            canvas.translate(-getHeight(), 0);
+            mEdgeGlowStart.setSize(getHeight(), getWidth());
+            if (mEdgeGlowStart.draw(canvas)) {
+                postInvalidateOnAnimation();
+            }
+            canvas.restoreToCount(restoreCount);
+        }
+        if (!mEdgeGlowEnd.isFinished()) {
+            int restoreCount = canvas.save();
+            canvas.rotate(90);
+            canvas.translate(0, -getWidth());
+            mEdgeGlowEnd.setSize(getHeight(), getWidth());
+            if (mEdgeGlowEnd.draw(canvas)) {
+                postInvalidateOnAnimation();
+            }
+            canvas.restoreToCount(restoreCount);
+        }
+    }
+
+    /**
+     * Draws x axis texts and marks of points in [first, last] to a canvas translated to content coordinates.
+     */
+    private void drawDecorations(Canvas canvas, float unitWidth, int first, int last) {
+        if (unitWidth < 1) {
+            // texts of points less than a pixel apart would only pile up, e.g. in showAll mode
+            return;
+        }
+        DataSource source = mSource;
+        int bottomY = getHeight() - mContentPaddingBottom;
+        for (int i = first; i <= last; i++) {
+            int dotX = (int) (unitWidth * i);
+            int dotY = (int) getMorphY(i);
+            if (mShowXText) {
+                String xAxisText = source.getXAxisText(i);
+                if (xAxisText != null) {
+                    int offsetX = getTextOffsetX(mXAxisTextCache, xAxisText, Gravity.CENTER_HORIZONTAL);
+                    canvas.drawText(xAxisText, dotX + offsetX, bottomY + mAxisTextSize, mXAxisPaint);
+                }
+            }
+            drawMarks(canvas, source, i, dotX, dotY);
+        }
+    }
+
+    private void drawMarks(Canvas canvas, DataSource source, int position, int dotX, int dotY) {
+        int markCount = source.getMarkCount(position);
+        for (int j = 0; j < markCount; j++) {
+            Mark mark = source.getMark(position, j);
+            int offsetX = getTextOffsetX(mDotTextCache, mark.content, mark.gravity) + mark.marginStart - mark.marginEnd;
+            int offsetY = getTextOffsetY(mDotTextCache, mark.gravity) + mark.marginTop - mark.marginBottom;
+
+            canvas.drawText(mark.content, dotX + offsetX, dotY + offsetY, mDotTextPaint);
+        }
+    }
+
+    /**
+     * cached bitmaps of the scrolled content, null when the render cache is disabled
+     */
+    private TileCache mTileCache;
+    private float mTileUnitWidth;
+    private final Canvas mTileCanvas = new Canvas();
+    private final Path mTilePath = new Path();
+    private final Path mTileFill = new Path();
+
+    private static final int DEFAULT_RENDER_CACHE_BYTES = 8 * 1024 * 1024;
+
+    /**
+     * Draws the curve, x axis texts and marks into bitmap tiles, so that scrolling only draws cached bitmaps.
+     * Worth it for expensive content, e.g. a large corner or many marks. Not used in showAll mode, nor with
+     * {@link #AUTO_RANGE_VISIBLE}, where scrolling changes the range and so moves every point.
+     * @param enabled true to enable
+     */
+    public void setRenderCacheEnabled(boolean enabled) {
+        if (enabled && mTileCache == null) {
+            mTileCache = new TileCache(DEFAULT_RENDER_CACHE_BYTES);
+        } else if (!enabled) {
+            mTileCache = null;
+        }
+        invalidate();
+    }
+
+    /**
+     * @param maxBytes maximum total size of cached tiles, least recently drawn tiles are evicted beyond it
+     */
+    public void setRenderCacheBudget(int maxBytes) {
+        if (mTileCache != null) {
+            mTileCache.setMaxBytes(maxBytes);
+        }
+    }
+
+    /**
+     * Drops all cached tiles and recorded layers, call after changing paints or anything else affecting how content is drawn.
+     */
+    public void invalidateRenderCache() {
+        if (mTileCache != null) {
+            mTileCache.invalidateAll();
+        }
+        mStaticPicture = null;
+        mContentPictureDirty = true;
+        invalidate();
+    }
+
+    /**
+     * Drops cached tiles drawing any point in [first, last].
+     */
+    private void invalidateTiles(int first, int last) {
+        if (mTileCache == null) {
+            return;
+        }
+        // a point's texts and neighbouring segments reach into tiles of nearby points
+        float left = (first - 1f - VISIBLE_MARGIN) * mTileUnitWidth;
+        float right = (last + 1f + VISIBLE_MARGIN) * mTileUnitWidth;
+        int lastTile = right / TileCache.TILE_WIDTH >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.floor(right / TileCache.TILE_WIDTH);
+        mTileCache.invalidate((int) Math.floor(left / TileCache.TILE_WIDTH), lastTile);
+    }
+
+    private void invalidateAllTiles() {
+        if (mTileCache != null) {
+            mTileCache.invalidateAll();
+        }
+    }
+
+    private void drawTiles(Canvas canvas, float unitWidth) {
+        if (mTileUnitWidth != unitWidth) {
+            mTileCache.invalidateAll();
+            mTileUnitWidth = unitWidth;
+        }
+        float left = -mOffsetX - mContentPaddingStart;
+        int firstTile = (int) Math.floor(left / TileCache.TILE_WIDTH);
+        int lastTile = (int) Math.floor((left + getWidth()) / TileCache.TILE_WIDTH);
+        for (int tile = firstTile; tile <= lastTile; tile++) {
+            Bitmap bitmap = mTileCache.get(tile);
+            if (bitmap != null) {
+                mMetrics.mTileCacheHits++;
+            } else {
+                mMetrics.mTileCacheMisses++;
+                bitmap = mTileCache.obtain(getHeight());
+                renderTile(bitmap, tile, unitWidth);
+                mTileCache.put(tile, bitmap);
+            }
+            canvas.drawBitmap(bitmap, tile * TileCache.TILE_WIDTH, 0, null);
+        }
+    }
+
+    private void renderTile(Bitmap bitmap, int tile, float unitWidth) {
+        int tileLeft = tile * TileCache.TILE_WIDTH;
+        int first = CurveGeometry.getFirstVisible(tileLeft, unitWidth);
+        int last = CurveGeometry.getLastVisible(tileLeft + TileCache.TILE_WIDTH, unitWidth, getCount());
+        if (first > last) {
+            return;
+        }
+
+        Canvas canvas = mTileCanvas;
+        canvas.setBitmap(bitmap);
+        canvas.save();
+        canvas.translate(-tileLeft, 0);
+
+        // segments beyond the tile keep corners at its edges the same as in neighbouring tiles
+        buildLinePath(mTilePath, null, mSource, first, last, unitWidth);
+        if (mFillArea) {
+            buildFillPath(mTileFill, mTilePath, first * unitWidth, last * unitWidth);
+            canvas.drawPath(mTileFill, mBackgroundPaint);
+        }
+        canvas.drawPath(mTilePath, mContentPaint);
+        drawDecorations(canvas, unitWidth, first, last);
+
+        canvas.restore();
+        canvas.setBitmap(null);
+    }
+
+    private static final int VISIBLE_MARGIN = CurveGeometry.VISIBLE_MARGIN;
+
+    /**
+     * first and last index of points to draw in current frame, inclusive
+     */
+    private int mFirstVisible;
+    private int mLastVisible;
+
+    /**
+     * index range currently covered by {@link #mContentPath}, inclusive
+     */
+    private int mPathStart;
+    private int mPathEnd = -1;
+    private float mPathUnitWidth;
+
+    private final Downsampler mDownsampler = new Downsampler();
+
+    /**
+     * Calculates the index range visible with current {@link #mOffsetX}, the result is saved
+     * to {@link #mFirstVisible} and {@link #mLastVisible}.
+     * @param unitWidth horizontal distance between two points
+     */
+    private void computeVisibleRange(float unitWidth) {
+        if (unitWidth <= 0) {
+            // all points squeezed together, nothing to cull
+            mFirstVisible = 0;
+            mLastVisible = getCount() - 1;
+            return;
+        }
+        float left = -mOffsetX - mContentPaddingStart;
+        mFirstVisible = CurveGeometry.getFirstVisible(left, unitWidth);
+        mLastVisible = CurveGeometry.getLastVisible(left + getWidth(), unitWidth, getCount());
+    }
+
+    /**
+     * Rebuilds {@link #mContentPath} for the visible range, extended by one screen on each side,
+     * so that scrolling doesn't require a rebuild every frame.
+     * @param unitWidth horizontal distance between two points
+     */
+    private void buildContentPath(float unitWidth) {
+        int span = mLastVisible - mFirstVisible;
+        mPathStart = Math.max(0, mFirstVisible - span);
+        mPathEnd = Math.min(getCount() - 1, mLastVisible + span);
+        mPathUnitWidth = unitWidth;
+
+        // the fill can't leave out the tail, so it isn't split off while filling
+        buildLinePath(mContentPath, mFillArea ? null : mContentTail, mSource, mPathStart, mPathEnd, unitWidth);
+    }
+
+    /**
+     * Resets a path to the line through the points of a source in [start, end], a polyline,
+     * or monotone cubic segments with {@link #SMOOTHING_MONOTONE}.
+     * @param tail receives the segment ending at the last point of the source instead of path, if not null
+     */
+    private void buildLinePath(Path path, Path tail, DataSource source, int start, int end, float unitWidth) {
+        path.rewind();
+        if (tail != null) {
+            tail.rewind();
+        }
+        path.moveTo(start * unitWidth, getPointY(source, start));
+        if (mSmoothing == SMOOTHING_MONOTONE) {
+            appendSmoothSegments(path, tail, source, start, end, unitWidth);
+            return;
+        }
+        for (int i = start + 1; i <= end; i++) {
+            path.lineTo(i * unitWidth, getPointY(source, i));
+        }
+    }
+
+    /**
+     * Adds monotone cubic segments through the points (from, to] of a source to a path ending at point from.
+     * @param tail receives the segment ending at the last point of the source instead of path, if not null
+     */
+    private void appendSmoothSegments(Path path, Path tail, DataSource source, int from, int to, float unitWidth) {
+        int count = source.getCount();
+        float y0 = getPointY(source, from);
+        float y1 = from + 1 < count ? getPointY(source, from + 1) : Float.NaN;
+        float m0 = MonotoneCubic.tangent(from > 0 ? getPointY(source, from - 1) : Float.NaN, y0, y1);
+        for (int i = from + 1; i <= to; i++) {
+            float y2 = i + 1 < count ? getPointY(source, i + 1) : Float.NaN;
+            float m1 = MonotoneCubic.tangent(y0, y1, y2);
+            if (tail != null && i == count - 1) {
+                tail.moveTo((i - 1) * unitWidth, y0);
+                MonotoneCubic.cubicTo(tail, i * unitWidth, y0, m0, y1, m1, unitWidth);
+            } else {
+                MonotoneCubic.cubicTo(path, i * unitWidth, y0, m0, y1, m1, unitWidth);
+            }
+            y0 = y1;
+            y1 = y2;
+            m0 = m1;
+        }
+    }
+
+    /**
+     * Builds {@link #mContentPath} through all points when several points share a pixel column,
+     * keeping only the points that make up the shape of the line, so the path has O(pixels) vertices.
+     * @param unitWidth horizontal distance between two points, less than 1
+     */
+    private void buildDownsampledPath(float unitWidth) {
+        mPathStart = 0;
+        mPathEnd = getCount() - 1;
+        mPathUnitWidth = unitWidth;
+
+        mContentTail.rewind();
+        buildDownsampledPath(mContentPath, mSource, mDownsampler, unitWidth);
+    }
+
+    private void buildDownsampledPath(Path path, DataSource source, Downsampler downsampler, float unitWidth) {
+        int size = downsampler.reduce(source, source.getCount(), unitWidth);
+        int[] indices = downsampler.getIndices();
+        path.reset();
+        path.moveTo(indices[0] * unitWidth, getPointY(source, indices[0]));
+        for (int i = 1; i < size; i++) {
+            path.lineTo(indices[i] * unitWidth, getPointY(source, indices[i]));
+        }
+    }
+
+    /**
+     * @return horizontal distance between two points, zoom included
+     */
+    private float getUnitWidth() {
+        return mShowAll ? getBaseUnitWidth() : getBaseUnitWidth() * mScale;
+    }
+
+    /**
+     * @return horizontal distance between two points, zoom excluded
+     */
+    private float getBaseUnitWidth() {
+        if (mShowAll) {
+            // float, or the width truncates to 0 once there are more points than pixels
+            return getCount() > 1 ? (getWidth() - mContentPaddingStart - mContentPaddingEnd) * 1f / (getCount() - 1) : 0;
+        }
+        return mUnitWidth;
+    }
+
+    private static final float DEFAULT_MAX_SCALE = 4f;
+
+    /**
+     * zoom factor of {@link #mUnitWidth}, changed by pinching
+     */
+    private float mScale = 1f;
+    private float mMaxScale = DEFAULT_MAX_SCALE;
+    private ScaleGestureDetector mScaleDetector;
+    /**
+     * true from a pinch until all fingers are up, the gesture then neither drags nor flings
+     */
+    private boolean mScaledInGesture;
+
+    public float getScale() {
+        return mScale;
+    }
+
+    /**
+     * Zooms horizontally around the middle of the view.
+     * @param scale zoom factor, limited to [{@link #getMinScale()}, max scale]
+     */
+    public void setScale(float scale) {
+        zoomTo(scale, getWidth() / 2f);
+    }
+
+    /**
+     * @param maxScale the largest zoom factor, 4 by default
+     */
+    public void setMaxScale(float maxScale) {
+        mMaxScale = maxScale;
+        if (mScale > maxScale) {
+            setScale(maxScale);
+        }
+    }
+
+    /**
+     * @return the smallest zoom factor, at which all points fit in the view
+     */
+    public float getMinScale() {
+        int count = getCount();
+        if (count <= 1 || mUnitWidth <= 0) {
+            return 1f;
+        }
+        float fit = (getWidth() - mContentPaddingStart - mContentPaddingEnd) * 1f / ((count - 1) * mUnitWidth);
+        return Math.max(Float.MIN_VALUE, Math.min(1f, fit));
+    }
+
+    /**
+     * @param scale new zoom factor
+     * @param focusX x in view that stays over the same point of the curve
+     */
+    private void zoomTo(float scale, float focusX) {
+        scale = Math.max(getMinScale(), Math.min(scale, mMaxScale));
+        if (scale == mScale) {
+            return;
+        }
+        float oldUnitWidth = getUnitWidth();
+        float contentX = focusX - mOffsetX - mContentPaddingStart;
+        mScale = scale;
+        if (oldUnitWidth > 0) {
+            setOffsetX(checkOffset((int) (focusX - mContentPaddingStart - contentX * getUnitWidth() / oldUnitWidth)));
+        }
+        invalidate();
+    }
+
+    private final ScaleGestureDetector.OnScaleGestureListener mScaleListener = new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+        @Override
+        public boolean onScaleBegin(ScaleGestureDetector detector) {
+            mScaledInGesture = true;
+            if (!mScroller.isFinished()) {
+                mScroller.abortAnimation();
+            }
+            return true;
+        }
+
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            zoomTo(mScale * detector.getScaleFactor(), detector.getFocusX());
+            return true;
+        }
+    };
+
+    private final LodPyramid mLodPyramid = new LodPyramid();
+
+    /**
+     * Builds {@link #mContentPath} for the visible range, extended by one screen on each side,
+     * from the buckets of a level of {@link #mLodPyramid}: the lowest and the highest point of each
+     * bucket in index order, so the number of vertices depends on the view width only.
+     * @param unitWidth horizontal distance between two points, less than 1
+     * @param level level of detail whose buckets are about a pixel wide
+     */
+    private void buildLodPath(float unitWidth, int level) {
+        int span = mLastVisible - mFirstVisible;
+        mPathStart = Math.max(0, mFirstVisible - span);
+        mPathEnd = Math.min(getCount() - 1, mLastVisible + span);
+        mPathUnitWidth = unitWidth;
+
+        mContentTail.rewind();
+        buildLodPath(mContentPath, mSource, mLodPyramid, mPathStart, mPathEnd, unitWidth, level);
+    }
+
+    private void buildLodPath(Path path, DataSource source, LodPyramid pyramid, int pathStart, int pathEnd, float unitWidth, int level) {
+        pyramid.update(source, source.getCount(), level);
+
+        path.reset();
+        boolean first = true;
+        for (int bucket = pathStart >> level; bucket <= pathEnd >> level; bucket++) {
+            int minIndex = pyramid.getMinIndex(level, bucket);
+            int maxIndex = pyramid.getMaxIndex(level, bucket);
+            int start = Math.min(minIndex, maxIndex);
+            int end = Math.max(minIndex, maxIndex);
+            if (first) {
+                path.moveTo(start * unitWidth, getPointY(source, start));
+                first = false;
+            } else {
+                path.lineTo(start * unitWidth, getPointY(source, start));
+            }
+            if (end != start) {
+                path.lineTo(end * unitWidth, getPointY(source, end));
+            }
+        }
+    }
+
+    /**
+     * Draws a series with the x positions computed for the primary data, see
+     * {@link #updateSeriesPath(Series, float, int)}.
+     */
+    private void drawSeries(Canvas canvas, Series series, float unitWidth, int lodLevel, int first, int last) {
+        DataSource source = series.mSource;
+        last = Math.min(last, source.getCount() - 1);
+        if (last < first) {
+            return;
+        }
+        canvas.drawPath(series.mPath, series.mPaint);
+        if (lodLevel == 0 && unitWidth >= 1) {
+            for (int i = first; i <= last; i++) {
+                drawMarks(canvas, source, i, (int) (unitWidth * i), (int) getPointY(source, i));
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the path of a series if the visible range left its window or the series changed.
+     * @return true if rebuilt
+     */
+    private boolean updateSeriesPath(Series series, float unitWidth, int lodLevel) {
+        DataSource source = series.mSource;
+        int last = Math.min(mLastVisible, source.getCount() - 1);
+        if (last < mFirstVisible) {
+            return false;
+        }
+        if (series.mPath.isEmpty() || series.mDirty || series.mPathUnitWidth != unitWidth
+                || mFirstVisible < series.mPathStart || last > series.mPathEnd) {
+            series.mDirty = false;
+            mMetrics.mPathRebuilds++;
+            int span = mLastVisible - mFirstVisible;
+            series.mPathStart = Math.max(0, mFirstVisible - span);
+            series.mPathEnd = Math.min(source.getCount() - 1, mLastVisible + span);
+            series.mPathUnitWidth = unitWidth;
+            if (mShowAll && unitWidth < 1) {
+                buildDownsampledPath(series.mPath, source, series.mDownsampler, unitWidth);
+            } else if (lodLevel > 0) {
+                buildLodPath(series.mPath, source, series.mLodPyramid, series.mPathStart, series.mPathEnd, unitWidth, lodLevel);
+            } else {
+                buildLinePath(series.mPath, null, source, series.mPathStart, series.mPathEnd, unitWidth);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Measures x axis texts and marks of points in view ahead of drawing, called once per data change,
+     * so that frames only look up cached sizes. Points scrolled into view later are measured when first drawn.
+     */
+    private void measureVisibleTexts() {
+        if (getCount() == 0 || getUnitWidth() < 1) {
+            return;
+        }
+        computeVisibleRange(getUnitWidth());
+        if (mAdapterColumns != null) {
+            // the path window, recorded by the layer cache, spans about three screens
+            mAdapterColumns.ensureDecorationCapacity(4 * (mLastVisible - mFirstVisible + 1));
+        }
+        DataSource source = mSource;
+        for (int i = mFirstVisible; i <= mLastVisible; i++) {
+            if (mShowXText) {
+                String xAxisText = source.getXAxisText(i);
+                if (xAxisText != null) {
+                    mXAxisTextCache.getWidth(xAxisText);
+                }
+            }
+            measureMarks(source, i);
+            for (int j = 0, size = mSeries.size(); j < size; j++) {
+                DataSource seriesSource = mSeries.get(j).mSource;
+                if (i < seriesSource.getCount()) {
+                    measureMarks(seriesSource, i);
+                }
+            }
+        }
+    }
+
+    private void measureMarks(DataSource source, int position) {
+        int markCount = source.getMarkCount(position);
+        for (int j = 0; j < markCount; j++) {
+            mDotTextCache.getWidth(source.getMark(position, j).content);
+        }
+    }
+
+    private int getTextOffsetY(TextMeasureCache cache, int gravity) {
+        return CurveGeometry.getTextOffsetY(cache.getAscent(), cache.getDescent(), gravity);
+    }
+
+    private int getTextOffsetX(TextMeasureCache cache, String s, int gravity) {
+        return CurveGeometry.getTextOffsetX(cache.getWidth(s), gravity);
+    }
+
+    public void setOffsetX(int offsetX) {
+        this.mOffsetX = offsetX;
+    }
+
+    int mLastX;
+    VelocityTracker mVelocityTracker;
+    int mMaxVelocity;
+    int mMinVelocity;
+    int mOverflingDistance;
+    int mTouchSlop;
+
+    private OverScroller mScroller;
+    /**
+     * true while {@link #mScroller} runs a fling rather than a scroll to a position
+     */
+    private boolean mFlinging;
+    private EdgeEffect mEdgeGlowStart;
+    private EdgeEffect mEdgeGlowEnd;
+
+    private static final int SMOOTH_SCROLL_DURATION = 250;
+
+    private void acquireVelocityTracker(MotionEvent event) {
+        if (mVelocityTracker == null) {
+            mVelocityTracker = VelocityTracker.obtain();
+        }
+        mVelocityTracker.addMovement(event);
+    }
+
+    private void releaseVelocityTracker() {
+        if (mVelocityTracker != null) {
+            mVelocityTracker.clear();
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mShowAll) {
+            // nothing to scroll or scale, touches only select points
+            return mOnPointSelectedListener != null && onSelectionTouchEvent(event);
+        }
+        acquireVelocityTracker(event);
+        mScaleDetector.onTouchEvent(event);
+        final VelocityTracker velocityTracker = mVelocityTracker;
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                // a new drag takes over from an ongoing fling
+                if (!mScroller.isFinished()) {
+                    mScroller.abortAnimation();
+                }
+                mScaledInGesture = false;
+                mLastX = (int) event.getRawX();
+                mDownX = event.getX();
+                mMovedInGesture = false;
+                mScrubbing = false;
+                if (mOnPointSelectedListener != null) {
+                    postDelayed(mStartScrub, ViewConfiguration.getLongPressTimeout());
+                }
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (mScrubbing) {
+                    // the crosshair follows the finger instead of scrolling
+                    selectAt(event.getX());
+                    break;
+                }
+                if (!mMovedInGesture && Math.abs(event.getX() - mDownX) > mTouchSlop) {
+                    mMovedInGesture = true;
+                    removeCallbacks(mStartScrub);
+                }
+                if (mScaledInGesture) {
+                    // pinching moves the curve around its focus instead
+                    removeCallbacks(mStartScrub);
+                    break;
+                }
+                int offset = (int) (mOffsetX + (event.getRawX() - mLastX));
+                pullEdgeGlows(offset);
+                offset = checkOffset(offset);
+                setOffsetX(offset);
+                mLastX = (int) event.getRawX();
+                invalidate();
+                break;
+            case MotionEvent.ACTION_UP:
+                removeCallbacks(mStartScrub);
+                if (mScrubbing) {
+                    mScrubbing = false;
+                    releaseVelocityTracker();
+                    break;
+                }
+                if (!mMovedInGesture && !mScaledInGesture && mOnPointSelectedListener != null) {
+                    // a tap
+                    selectAt(event.getX());
+                    performClick();
+                }
+                velocityTracker.computeCurrentVelocity(1000, mMaxVelocity);
+                float velocityX = velocityTracker.getXVelocity();
+                if (!mScaledInGesture && Math.abs(velocityX) > mMinVelocity) {
+                    fling((int) -velocityX);
+                }
+                releaseEdgeGlows();
+                releaseVelocityTracker();
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                removeCallbacks(mStartScrub);
+                mScrubbing = false;
+                releaseEdgeGlows();
+                releaseVelocityTracker();
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * Handles taps and scrubbing alone, for showAll mode where nothing scrolls.
+     */
+    private boolean onSelectionTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mDownX = event.getX();
+                mMovedInGesture = false;
+                mScrubbing = false;
+                postDelayed(mStartScrub, ViewConfiguration.getLongPressTimeout());
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (mScrubbing) {
+                    selectAt(event.getX());
+                } else if (!mMovedInGesture && Math.abs(event.getX() - mDownX) > mTouchSlop) {
+                    mMovedInGesture = true;
+                    removeCallbacks(mStartScrub);
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+                removeCallbacks(mStartScrub);
+                if (mScrubbing) {
+                    mScrubbing = false;
+                } else if (!mMovedInGesture) {
+                    // a tap
+                    selectAt(event.getX());
+                    performClick();
+                }
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                removeCallbacks(mStartScrub);
+                mScrubbing = false;
+                break;
+        }
+        return true;
+    }
+
+    public static final int NO_POSITION = -1;
+
+    public interface OnPointSelectedListener {
+        /**
+         * Called when a point is tapped, or passed under the finger while scrubbing.
+         * @param view the view
+         * @param position index of the selected point, {@link #NO_POSITION} when the selection is cleared
+         */
+        void onPointSelected(CurveView view, int position);
+    }
+
+    private OnPointSelectedListener mOnPointSelectedListener;
+    private int mSelection = NO_POSITION;
+    private Paint mHighlightPaint;
+    /**
+     * true from a long press until the finger is up, the selection then follows the finger
+     */
+    private boolean mScrubbing;
+    private boolean mMovedInGesture;
+    private float mDownX;
+
+    private final Runnable mStartScrub = new Runnable() {
+        @Override
+        public void run() {
+            mScrubbing = true;
+            if (getParent() != null) {
+                getParent().requestDisallowInterceptTouchEvent(true);
+            }
+            selectAt(mDownX);
+        }
+    };
+
+    /**
+     * Enables selecting points: a tap selects the point nearest to it, and a long press starts
+     * scrubbing, moving the selection with the finger instead of scrolling. The selection is
+     * drawn as a vertical line through the point.
+     * @param listener listener notified of selections, null to disable selecting
+     */
+    public void setOnPointSelectedListener(OnPointSelectedListener listener) {
+        mOnPointSelectedListener = listener;
+    }
+
+    /**
+     * @return index of the selected point, {@link #NO_POSITION} if none
+     */
+    public int getSelection() {
+        return mSelection;
+    }
+
+    /**
+     * @param position index of the point to select, {@link #NO_POSITION} to clear the selection
+     */
+    public void setSelection(int position) {
+        if (position < 0 || position >= getCount()) {
+            position = NO_POSITION;
+        }
+        if (position == mSelection) {
+            return;
+        }
+        invalidateHighlight(mSelection);
+        mSelection = position;
+        invalidateHighlight(position);
+        if (mOnPointSelectedListener != null) {
+            mOnPointSelectedListener.onPointSelected(this, position);
+        }
+    }
+
+    public void clearSelection() {
+        setSelection(NO_POSITION);
+    }
+
+    /**
+     * @return paint of the selection line and dot, call {@link #invalidate()} after changing it
+     */
+    public Paint getHighlightPaint() {
+        return mHighlightPaint;
+    }
+
+    /**
+     * Finds the point nearest to an x coordinate in O(1), points being evenly spaced.
+     * @param x x in view
+     * @return index of the nearest point, {@link #NO_POSITION} if there are no points
+     */
+    public int getPositionAt(float x) {
+        int count = getCount();
+        if (count == 0) {
+            return NO_POSITION;
+        }
+        float unitWidth = getUnitWidth();
+        if (unitWidth <= 0) {
+            return 0;
+        }
+        int position = Math.round((x - mOffsetX - mContentPaddingStart) / unitWidth);
+        return Math.max(0, Math.min(count - 1, position));
+    }
+
+    /**
+     * Keeps the selection on its index across data changes, unless the point is gone.
+     */
+    private void checkSelection() {
+        if (mSelection >= getCount()) {
+            setSelection(NO_POSITION);
+        }
+    }
+
+    private void selectAt(float x) {
+        setSelection(getPositionAt(x));
+    }
+
+    private float getHighlightRadius() {
+        return Math.max(mHighlightPaint.getStrokeWidth(), mStrokeWidth) * 2;
+    }
+
+    /**
+     * Invalidates the vertical band of the view a highlight of the point covers.
+     */
+    private void invalidateHighlight(int position) {
+        if (position == NO_POSITION) {
+            return;
+        }
+        float x = mOffsetX + mContentPaddingStart + position * getUnitWidth();
+        float radius = getHighlightRadius();
+        invalidate((int) Math.floor(x - radius), 0, (int) Math.ceil(x + radius), getHeight());
+    }
+
+    private void drawHighlight(Canvas canvas, float unitWidth) {
+        if (mSelection == NO_POSITION) {
+            return;
+        }
+        float x = mSelection * unitWidth;
+        float y = getMorphY(mSelection);
+        canvas.drawLine(x, mContentPaddingTop, x, getHeight() - mContentPaddingBottom, mHighlightPaint);
+        canvas.drawCircle(x, y, getHighlightRadius(), mHighlightPaint);
+    }
+
+    /**
+     * @param velocity velocity of scrollX in pixels per second, that is, the opposite of the finger
+     */
+    private void fling(int velocity) {
+        int maxScrollX = getMaxScrollX();
+        if (maxScrollX == 0) {
+            return;
+        }
+        mFlinging = true;
+        int overfling = getOverScrollMode() == OVER_SCROLL_NEVER ? 0 : mOverflingDistance;
+        mScroller.fling(-mOffsetX, 0, velocity, 0, 0, maxScrollX, 0, 0, overfling, 0);
+        postInvalidateOnAnimation();
+    }
+
+    /**
+     * Scrolls until the point is in the middle of the view, or as close as the scroll range allows.
+     * @param index index of the point
+     */
+    public void smoothScrollToIndex(int index) {
+        if (mShowAll || getCount() == 0) {
+            return;
+        }
+        int scrollX = CurveGeometry.getScrollXToCenter(index, getCount(), getUnitWidth(), mContentPaddingStart,
+                getWidth(), getMaxScrollX());
+        if (!mScroller.isFinished()) {
+            mScroller.abortAnimation();
+        }
+        mFlinging = false;
+        mScroller.startScroll(-mOffsetX, 0, scrollX + mOffsetX, 0, SMOOTH_SCROLL_DURATION);
+        postInvalidateOnAnimation();
+    }
+
+    @Override
+    public void computeScroll() {
+        if (!mScroller.computeScrollOffset()) {
+            return;
+        }
+        int oldX = -mOffsetX;
+        int x = mScroller.getCurrX();
+        if (mFlinging && getOverScrollMode() != OVER_SCROLL_NEVER) {
+            int edge = CurveGeometry.getEdgeCrossed(oldX, x, getMaxScrollX());
+            if (edge == CurveGeometry.EDGE_START) {
+                mEdgeGlowStart.onAbsorb((int) mScroller.getCurrVelocity());
+            } else if (edge == CurveGeometry.EDGE_END) {
+                mEdgeGlowEnd.onAbsorb((int) mScroller.getCurrVelocity());
+            }
+        }
+        // within the overfling distance beyond the edges, the scroller springs back by itself
+        setOffsetX(-x);
+        postInvalidateOnAnimation();
+    }
+
+    /**
+     * @return largest scrollX, that is, -{@link #mOffsetX} when the last point is in view
+     */
+    private int getMaxScrollX() {
+        return -getMinOffsetX(getCount());
+    }
+
+    /**
+     * @param offset offset the finger has dragged to, before being limited
+     */
+    private void pullEdgeGlows(int offset) {
+        if (getOverScrollMode() == OVER_SCROLL_NEVER || getMaxScrollX() == 0) {
+            return;
+        }
+        if (offset > 0) {
+            mEdgeGlowStart.onPull((float) (offset - Math.max(mOffsetX, 0)) / getWidth());
+        } else if (offset < -getMaxScrollX()) {
+            mEdgeGlowEnd.onPull((float) (Math.min(mOffsetX, -getMaxScrollX()) - offset) / getWidth());
+        }
+    }
+
+    private void releaseEdgeGlows() {
+        mEdgeGlowStart.onRelease();
+        mEdgeGlowEnd.onRelease();
+        if (!mEdgeGlowStart.isFinished() || !mEdgeGlowEnd.isFinished()) {
+            postInvalidateOnAnimation();
+        }
+    }
+
+    private boolean mTrackAllocations = false;
+    private int mFrameAllocationCount;
+
+    // the allocation counters are deprecated without a replacement, fine for a debug only aid
+    @SuppressWarnings("deprecation")
+    private void drawFrameCountingAllocations(Canvas canvas) {
+        int allocations = Debug.getThreadAllocCount();
+        drawFrame(canvas);
+        mFrameAllocationCount = Debug.getThreadAllocCount() - allocations;
+        if (mFrameAllocationCount > 0) {
+            Log.w(TAG, "onDraw allocated " + mFrameAllocationCount + " objects");
+        }
+    }
+
+    /**
+     * Counts objects allocated on the UI thread during each {@link #onDraw(Canvas)}, for catching
+     * allocations in the drawing path. Frames that allocate are logged, the last count is available from
+     * {@link #getFrameAllocationCount()}. Debug only, counting slows the VM down.
+     * @param enabled true to count
+     */
+    @SuppressWarnings("deprecation") // see drawFrameCountingAllocations
+    public void setAllocationTrackingEnabled(boolean enabled) {
+        if (enabled == mTrackAllocations) {
+            return;
+        }
+        mTrackAllocations = enabled;
+        if (enabled) {
+            Debug.startAllocCounting();
+        } else {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    /**
+     * @return objects allocated by the last frame, valid when allocation tracking is enabled
+     */
+    public int getFrameAllocationCount() {
+        return mFrameAllocationCount;
+    }
+
+    private static final String TRACE_DRAW = "CurveView#onDraw";
+    private static final String TRACE_DATA_CHANGE = "CurveView#dataChange";
+    private static final String TRACE_LAYOUT = "CurveView#asyncLayout";
+
+    private final CurveMetrics mMetrics = new CurveMetrics();
+    private CurveMetrics.Listener mMetricsListener;
+    private boolean mTraceEnabled = false;
+    /**
+     * state of the data change being applied, see {@link #beginDataChange()}
+     */
+    private boolean mTracingDataChange;
+    private int mDataChangeAdapterCalls;
+
+    /**
+     * Reports counters and durations of every frame and every data change, aggregated into
+     * percentile histograms of {@link CurveMetrics}. Timing costs two clock reads per frame,
+     * nothing is measured without a listener.
+     * @param listener listener called on the UI thread, null to stop measuring
+     */
+    public void setMetricsListener(CurveMetrics.Listener listener) {
+        if (listener != null && mMetricsListener == null) {
+            mMetrics.reset();
+        }
+        mMetricsListener = listener;
+    }
+
+    public CurveMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Wraps drawing, data changes and async layouts in systrace sections, to see them in
+     * systrace or the profiler next to the rest of the frame.
+     * @param enabled true to emit trace sections
+     */
+    public void setTraceEnabled(boolean enabled) {
+        mTraceEnabled = enabled;
+    }
+
+    private long beginDataChange() {
+        mTracingDataChange = mTraceEnabled;
+        if (mTracingDataChange) {
+            Trace.beginSection(TRACE_DATA_CHANGE);
+        }
+        mDataChangeAdapterCalls = mAdapterColumns == null ? 0 : mAdapterColumns.mAdapterCalls;
+        // the transition would end at outdated positions
+        endMorph();
+        return mMetricsListener == null ? 0 : System.nanoTime();
+    }
+
+    private void endDataChange(long start) {
+        checkSelection();
+        if (mTracingDataChange) {
+            Trace.endSection();
+            mTracingDataChange = false;
+        }
+        if (mMetricsListener != null) {
+            int adapterCalls = mAdapterColumns == null ? 0 : mAdapterColumns.mAdapterCalls - mDataChangeAdapterCalls;
+            mMetrics.endDataChange(System.nanoTime() - start, adapterCalls);
+            mMetricsListener.onDataChanged(mMetrics);
+        }
+    }
+
+    /**
+     * offset > 0, scroll to left
+     * offset < 0, scroll to right
+     * normally, offset should <= 0
+     * @param offset offset to scroll horizontally
+     * @return fixed offset, not to exceed limit
+     */
+    private int checkOffset(int offset) {
+        // only scroll when paint width > view width
+        int paintWdith = (int) ((getCount() - 1) * getUnitWidth()) + mContentPaddingStart + mContentPaddingEnd;
+        return CurveGeometry.clampOffset(offset, paintWdith, getWidth());
+    }
+
+    private Adapter mAdapter;
+    private DataSource mSource;
+
+    /**
+     * columns holding the data read from {@link #mAdapter}
+     */
+    private AdapterColumns mAdapterColumns;
+
+    public void setAdapter(Adapter adapter) {
+        detachData();
+        mAdapter = adapter;
+        mAdapterColumns = new AdapterColumns(adapter);
+        mSource = mAdapterColumns;
+        adapter.registerDataSetObserver(this);
+
+        if (mLayoutExecutor != null) {
+            scheduleAsyncLayout(true);
+        } else {
+            updateAdapterData();
+        }
+    }
+
+    /**
+     * Draws data read directly from the source, without copying it as {@link #setAdapter(Adapter)} does.
+     * @param source data of the curve
+     */
+    public void setDataSource(DataSource source) {
+        detachData();
+        mSource = source;
+        source.registerDataSetObserver(this);
+
+        updateAdapterData();
+    }
+
+    private void detachData() {
+        if (mAdapter != null) {
+            mAdapter.unregisterDataSetObserver(this);
+            mAdapter = null;
+        } else if (mSource != null) {
+            mSource.unregisterDataSetObserver(this);
+        }
+        mSource = null;
+        mAdapterColumns = null;
+        mProjectedY = null;
+        // drop layouts still being computed for the old data
+        mLayoutGeneration++;
+    }
+
+    private int getCount() {
+        return mSource == null ? 0 : mSource.getCount();
+    }
+
+    @Override
+    public void onChanged() {
+        boolean morph = captureMorph();
+        if (isAsyncLayout()) {
+            mMorphCaptured = morph;
+            scheduleAsyncLayout(true);
+            return;
+        }
+        updateAdapterData();
+        checkSelection();
+        if (morph) {
+            startMorph();
+        }
+        invalidate();
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        if (mSource == null) {
+            return;
+        }
+        if (isAsyncLayout() && !applyRangeInPlace()) {
+            scheduleAsyncLayout(true);
+            return;
+        }
+        long start = beginDataChange();
+        if (mAdapter != null) {
+            for (int i = positionStart; i < positionStart + itemCount; i++) {
+                mAdapterColumns.load(i);
+            }
+            mAdapterColumns.clearDecorations(positionStart, itemCount);
+            mAdapterColumns.loadLevelRange();
+        }
+        if (mRangeTree != null) {
+            for (int i = positionStart; i < positionStart + itemCount; i++) {
+                mRangeTree.set(i, mSource.getLevel(i));
+            }
+        }
+        updateLevelRange();
+        mDownsampler.invalidate();
+        mLodPyramid.invalidateFrom(positionStart);
+        invalidateTiles(positionStart, positionStart + itemCount - 1);
+        // smoothed segments also bend with the levels of the points next to them
+        int reach = mSmoothing == SMOOTHING_MONOTONE ? 1 : 0;
+        if (positionStart - reach <= mPathEnd && positionStart + itemCount + reach > mPathStart) {
+            mForceUpdate = true;
+        }
+        measureVisibleTexts();
+        endDataChange(start);
+        invalidate();
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        if (mSource == null) {
+            return;
+        }
+        if (isAsyncLayout() && !applyRangeInPlace()) {
+            scheduleAsyncLayout(true);
+            return;
+        }
+        long start = beginDataChange();
+        boolean append = positionStart + itemCount == getCount();
+        boolean wasAtEnd = mOffsetX <= getMinOffsetX(mLastCount);
+        if (mAdapter != null) {
+            append = positionStart == mAdapterColumns.getCount();
+            mAdapterColumns.insert(positionStart, itemCount);
+            for (int i = positionStart; i < positionStart + itemCount; i++) {
+                mAdapterColumns.load(i);
+            }
+            mAdapterColumns.loadLevelRange();
+        }
+        if (mRangeTree != null) {
+            if (positionStart == mRangeTree.size()) {
+                for (int i = positionStart; i < positionStart + itemCount; i++) {
+                    mRangeTree.append(mSource.getLevel(i));
+                }
+            } else {
+                mRangeTree.rebuild(mSource, getCount());
+            }
+        }
+        updateLevelRange();
+        mDownsampler.invalidate();
+        mLodPyramid.invalidateFrom(positionStart);
+        // points after positionStart all moved
+        invalidateTiles(positionStart, Integer.MAX_VALUE);
+
+        boolean smooth = mSmoothing == SMOOTHING_MONOTONE;
+        if (append && !mShowAll && getUnitWidth() >= 1 && !mForceUpdate && !mContentPath.isEmpty() && mPathEnd == positionStart - 1
+                && mPathEnd - mPathStart < MAX_PATH_WINDOW_SCREENS * (mLastVisible - mFirstVisible + 1)
+                && (!smooth || !mContentTail.isEmpty())) {
+            // path ends at the old last point, extend it instead of rebuilding
+            if (smooth) {
+                // the old last segment bends towards the new points now, replace it
+                mContentTail.rewind();
+                appendSmoothSegments(mContentPath, mContentTail, mSource, positionStart - 2,
+                        positionStart + itemCount - 1, getUnitWidth());
+            } else {
+                float unitWidth = getUnitWidth();
+                for (int i = positionStart; i < positionStart + itemCount; i++) {
+                    mContentPath.lineTo(i * unitWidth, getPointY(i));
+                }
+            }
+            mPathEnd = positionStart + itemCount - 1;
+            // a contour per append would show seams under the rounded corners, fill the whole path again
+            mContentFillDirty = true;
+            mContentPictureDirty = true;
+        } else if (positionStart <= mPathEnd || mShowAll) {
+            mForceUpdate = true;
+        }
+        if (append && wasAtEnd && !mShowAll) {
+            // keep the newest point in view
+            setOffsetX(getMinOffsetX(getCount()));
+        }
+        mLastCount = getCount();
+        measureVisibleTexts();
+        endDataChange(start);
+        invalidate();
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        if (mSource == null) {
+            return;
+        }
+        if (isAsyncLayout() && !applyRangeInPlace()) {
+            scheduleAsyncLayout(true);
+            return;
+        }
+        long start = beginDataChange();
+        boolean wasAtEnd = mOffsetX <= getMinOffsetX(mLastCount);
+        if (mAdapter != null) {
+            mAdapterColumns.remove(positionStart, itemCount);
+            mAdapterColumns.loadLevelRange();
+        }
+        if (mRangeTree != null) {
+            if (positionStart == 0) {
+                mRangeTree.removeFirst(itemCount);
+            } else {
+                mRangeTree.rebuild(mSource, getCount());
+            }
+        }
+        updateLevelRange();
+        mDownsampler.invalidate();
+        mLodPyramid.invalidateFrom(positionStart);
+        invalidateTiles(positionStart, Integer.MAX_VALUE);
+
+        if (wasAtEnd) {
+            setOffsetX(getMinOffsetX(getCount()));
+        } else if (positionStart == 0) {
+            // keep the same points in view
+            setOffsetX(Math.min(0, mOffsetX + (int) (itemCount * getUnitWidth())));
+        }
+
+        if (positionStart == 0 && !mShowAll && getUnitWidth() >= 1 && !mForceUpdate && !mContentPath.isEmpty() && itemCount <= mPathEnd) {
+            // points shift left by itemCount units, e.g. evicted from a StreamingSource,
+            // move the path along instead of rebuilding it
+            mContentPath.offset(-itemCount * getUnitWidth(), 0);
+            mContentTail.offset(-itemCount * getUnitWidth(), 0);
+            mContentFill.offset(-itemCount * getUnitWidth(), 0);
+            mPathStart -= itemCount;
+            mPathEnd -= itemCount;
+            mContentPictureDirty = true;
+            // with smoothing, the first point lost its neighbour and its segment changes shape too
+            if (mPathStart < (mSmoothing == SMOOTHING_MONOTONE ? 1 : 0) && mOffsetX > -mContentPaddingStart) {
+                // segments of removed points at x < 0 would be visible
+                mForceUpdate = true;
+            }
+        } else if (positionStart <= mPathEnd || mShowAll) {
+            mForceUpdate = true;
+        }
+        mLastCount = getCount();
+        measureVisibleTexts();
+        endDataChange(start);
+        invalidate();
+    }
+
+    /**
+     * when appending extends the path beyond this many visible ranges, it is rebuilt instead,
+     * so that a path following a stream doesn't grow forever
+     */
+    private static final int MAX_PATH_WINDOW_SCREENS = 4;
+
+    /**
+     * number of points when the last change was handled, tells whether the newest point
+     * was in view before a change
+     */
+    private int mLastCount;
+
+    /**
+     * @param count number of points
+     * @return offset at which the last point is in view
+     */
+    private int getMinOffsetX(int count) {
+        int paintWidth = (int) ((count - 1) * getUnitWidth()) + mContentPaddingStart + mContentPaddingEnd;
+        return Math.min(0, getWidth() - paintWidth);
+    }
+
+    private float mMinLevel = 0;
+    private float mMaxLevel = 100;
+    /**
+     * vertical pixels per level, projects levels to y coordinates, see {@link #updateProjection()}
+     */
+    private float mPixelsPerLevel;
+
+    private boolean mForceUpdate = false;
+
+
+    private void updateAdapterData() {
+        mForceUpdate = true;
+        mDownsampler.invalidate();
+        mLodPyramid.invalidate();
+        invalidateAllTiles();
+        mProjectedY = null;
+        clearData();
+        if (mSource == null) {
+            return;
+        }
+
+        long start = beginDataChange();
+        if (mAdapter != null) {
+            mAdapterColumns.loadAll();
+        }
+        if (mRangeTree != null) {
+            mRangeTree.rebuild(mSource, getCount());
+        }
+        updateLevelRange();
+        mLastCount = getCount();
+        measureVisibleTexts();
+        endDataChange(start);
+    }
+
+    /**
+     * executor computing layouts off the UI thread, null to compute them synchronously
+     */
+    private Executor mLayoutExecutor;
+    /**
+     * increased whenever a computing layout becomes outdated, read by workers to stop early
+     */
+    private volatile int mLayoutGeneration;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * y coordinate of every point, projected by the last published layout for {@link #mProjectedHeight}
+     */
+    private float[] mProjectedY;
+    private int mProjectedHeight;
+    private float mProjectedMinLevel;
+    private float mProjectedMaxLevel;
+
+    /**
+     * Reads the adapter, projects levels and builds the path on the executor instead of the UI thread.
+     * The result is swapped in on the UI thread when complete, the previous one is drawn until then,
+     * and a change notified meanwhile cancels it in favor of a new one. Only a full change reads the
+     * whole adapter again on the executor, ranged changes are applied on the UI thread as without one.
+     *
+     * Only applies to data of {@link #setAdapter(Adapter)}, the adapter must then be safe to read
+     * from the executor's threads. Data sources are always read on the UI thread.
+     *
+     * @param executor executor to run layouts on, e.g. a single thread executor, null to lay out synchronously
+     */
+    public void setLayoutExecutor(Executor executor) {
+        mLayoutExecutor = executor;
+        if (mAdapter == null) {
+            return;
+        }
+        if (executor != null) {
+            scheduleAsyncLayout(true);
+        } else {
+            mLayoutGeneration++;
+            updateAdapterData();
+            invalidate();
+        }
+    }
+
+    private boolean isAsyncLayout() {
+        return mLayoutExecutor != null && mAdapter != null;
+    }
+
+    /**
+     * Prepares a ranged change of the adapter to be applied to the current columns on the UI thread,
+     * as without an executor, instead of reading the whole adapter again.
+     * @return false if a reload is still pending and the change must wait for it
+     */
+    private boolean applyRangeInPlace() {
+        if (mAdapterColumns == null || mAdapterColumns.mStale) {
+            return false;
+        }
+        // a layout computing the old data is outdated, so are its projected points
+        mLayoutGeneration++;
+        mProjectedY = null;
+        return true;
+    }
+
+    /**
+     * @param reload true to read the adapter again, false to lay out the current data, e.g. for a new size
+     */
+    private void scheduleAsyncLayout(boolean reload) {
+        if (mAdapterColumns != null) {
+            // a reload still pending isn't replaced by a layout of the old data
+            reload |= mAdapterColumns.mStale;
+            mAdapterColumns.mStale = reload;
+        }
+        int generation = ++mLayoutGeneration;
+        float unitWidth = mUnitWidth * mScale;
+        int count = reload ? mAdapter.getCount() : getCount();
+        if (mShowAll) {
+            unitWidth = count > 1 ? (getWidth() - mContentPaddingStart - mContentPaddingEnd) * 1f / (count - 1) : 0;
+        }
+        // the UI thread goes on changing the columns, the task lays out a copy of their levels
+        mLayoutExecutor.execute(new LayoutTask(generation, mAdapter, reload ? null : mAdapterColumns.copyLevels(),
+                getWidth(), getHeight(), mOffsetX, unitWidth, mShowAll, mContentPaddingStart, mContentPaddingTop,
+                mContentPaddingBottom, mAutoRange, mSmoothing, mTraceEnabled));
+    }
+
+    private void publishLayout(LayoutTask task) {
+        if (task.mGeneration != mLayoutGeneration) {
+            return;
+        }
+        if (task.mColumns != null) {
+            mAdapterColumns = task.mColumns;
+            mSource = mAdapterColumns;
+        }
+        if (mAutoRange != AUTO_RANGE_NONE) {
+            if (task.mRangeTree != null) {
+                mRangeTree = task.mRangeTree;
+            } else {
+                // auto range was turned on after the task was scheduled
+                mRangeTree.rebuild(mSource, getCount());
+            }
+        }
+        mProjectedY = task.mProjectedY;
+        mProjectedHeight = task.mHeight;
+        mProjectedMinLevel = task.mMinLevel;
+        mProjectedMaxLevel = task.mMaxLevel;
+
+        mContentPath = task.mPath;
+        mContentTail.rewind();
+        mContentFillDirty = true;
+        mPathStart = task.mPathStart;
+        mPathEnd = task.mPathEnd;
+        mPathUnitWidth = task.mUnitWidth;
+        mForceUpdate = false;
+        // series may widen the range, the path is then rebuilt with points projected on the UI thread
+        updateLevelRange();
+        mForceUpdate |= mProjectedMinLevel != mMinLevel || mProjectedMaxLevel != mMaxLevel;
+        mDownsampler.invalidate();
+        mLodPyramid.invalidate();
+        invalidateAllTiles();
+        mLastCount = getCount();
+        measureVisibleTexts();
+        checkSelection();
+        if (mMetricsListener != null) {
+            mMetrics.endDataChange(task.mNanos, task.mAdapterCalls);
+            mMetricsListener.onDataChanged(mMetrics);
+        }
+        if (mMorphCaptured) {
+            mMorphCaptured = false;
+            startMorph();
+        }
+        invalidate();
+    }
+
+    /**
+     * Computes data and geometry of a layout on the executor. Everything is written before
+     * the task is posted to the UI thread and never modified after.
+     */
+    private class LayoutTask implements Runnable {
+        /**
+         * how many points are processed between checks for cancellation
+         */
+        private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+        final int mGeneration;
+        final Adapter mAdapter;
+        final int mWidth;
+        final int mHeight;
+        final int mOffsetX;
+        final float mUnitWidth;
+        final boolean mShowAll;
+        final int mPaddingStart;
+        final int mPaddingTop;
+        final int mPaddingBottom;
+        final int mAutoRange;
+        final int mSmoothing;
+        final boolean mTrace;
+
+        /**
+         * levels to lay out, copied on the UI thread, null to read the adapter into {@link #mColumns}
+         */
+        DataSource mLevels;
+        /**
+         * columns read from the adapter, null if the levels were copied
+         */
+        AdapterColumns mColumns;
+        /**
+         * duration of the task and adapter calls it made, for {@link CurveMetrics}
+         */
+        long mNanos;
+        int mAdapterCalls;
+        RangeTree mRangeTree;
+        float mMinLevel;
+        float mMaxLevel;
+        float[] mProjectedY;
+        Path mPath;
+        int mPathStart;
+        int mPathEnd;
+
+        LayoutTask(int generation, Adapter adapter, DataSource levels, int width, int height, int offsetX, float unitWidth,
+                   boolean showAll, int paddingStart, int paddingTop, int paddingBottom, int autoRange, int smoothing, boolean trace) {
+            mGeneration = generation;
+            mAdapter = adapter;
+            mLevels = levels;
+            mWidth = width;
+            mHeight = height;
+            mOffsetX = offsetX;
+            mUnitWidth = unitWidth;
+            mShowAll = showAll;
+            mPaddingStart = paddingStart;
+            mPaddingTop = paddingTop;
+            mPaddingBottom = paddingBottom;
+            mAutoRange = autoRange;
+            mSmoothing = smoothing;
+            mTrace = trace;
+        }
+
+        private boolean isCancelled() {
+            return mGeneration != mLayoutGeneration;
+        }
+
+        @Override
+        public void run() {
+            if (mTrace) {
+                Trace.beginSection(TRACE_LAYOUT);
+            }
+            try {
+                layout();
+            } finally {
+                if (mTrace) {
+                    Trace.endSection();
+                }
+            }
+        }
+
+        private void layout() {
+            long start = System.nanoTime();
+            if (mLevels == null) {
+                AdapterColumns columns = new AdapterColumns(mAdapter);
+                int count = mAdapter.getCount();
+                columns.mAdapterCalls++;
+                for (int i = 0; i < count; i++) {
+                    if (i % CANCEL_CHECK_INTERVAL == 0 && isCancelled()) {
+                        return;
+                    }
+                    columns.add(0);
+                    columns.load(i);
+                }
+                columns.loadLevelRange();
+                mColumns = columns;
+                mLevels = columns;
+                mAdapterCalls = columns.mAdapterCalls;
+            }
+
+            int count = mLevels.getCount();
+            mMinLevel = mLevels.getMinLevel();
+            mMaxLevel = mLevels.getMaxLevel();
+            if (mAutoRange != AUTO_RANGE_NONE && count > 0) {
+                mRangeTree = new RangeTree();
+                mRangeTree.rebuild(mLevels, count);
+                int from = 0;
+                int to = count - 1;
+                if (mAutoRange == AUTO_RANGE_VISIBLE && mUnitWidth > 0) {
+                    float left = -mOffsetX - mPaddingStart;
+                    from = Math.min(to, CurveGeometry.getFirstVisible(left, mUnitWidth));
+                    to = CurveGeometry.getLastVisible(left + mWidth, mUnitWidth, count);
+                }
+                mMinLevel = mRangeTree.getMin(from, to);
+                mMaxLevel = mRangeTree.getMax(from, to);
+            }
+            float pixelsPerLevel = CurveGeometry.getPixelsPerLevel(mHeight - mPaddingTop - mPaddingBottom, mMinLevel, mMaxLevel);
+            int bottomY = mHeight - mPaddingBottom;
+            mProjectedY = new float[count];
+            for (int i = 0; i < count; i += CANCEL_CHECK_INTERVAL) {
+                if (isCancelled()) {
+                    return;
+                }
+                CurveGeometry.project(mLevels, i, Math.min(count, i + CANCEL_CHECK_INTERVAL), bottomY, mMinLevel, pixelsPerLevel, mProjectedY);
+            }
+
+            mPath = new Path();
+            if (count > 0) {
+                if (mShowAll && mUnitWidth < 1) {
+                    Downsampler downsampler = new Downsampler();
+                    int size = downsampler.reduce(mLevels, count, mUnitWidth);
+                    int[] indices = downsampler.getIndices();
+                    mPathStart = 0;
+                    mPathEnd = count - 1;
+                    mPath.moveTo(indices[0] * mUnitWidth, mProjectedY[indices[0]]);
+                    for (int i = 1; i < size; i++) {
+                        mPath.lineTo(indices[i] * mUnitWidth, mProjectedY[indices[i]]);
+                    }
+                } else if (mUnitWidth >= 1 || mShowAll) {
+                    // visible range at the time of scheduling, extended by one screen on each side
+                    int first = 0;
+                    int last = count - 1;
+                    if (mUnitWidth > 0) {
+                        float left = -mOffsetX - mPaddingStart;
+                        first = CurveGeometry.getFirstVisible(left, mUnitWidth);
+                        last = CurveGeometry.getLastVisible(left + mWidth, mUnitWidth, count);
+                    }
+                    int span = last - first;
+                    mPathStart = Math.max(0, first - span);
+                    mPathEnd = Math.min(count - 1, last + span);
+                    CurveGeometry.buildPath(mPath, mProjectedY, count, mPathStart, mPathEnd, mUnitWidth,
+                            mSmoothing == SMOOTHING_MONOTONE);
+                }
+            }
+
+            mNanos = System.nanoTime() - start;
+            if (!isCancelled()) {
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        publishLayout(LayoutTask.this);
+                    }
+                });
+            }
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateProjection();
+        mStaticPicture = null;
+        mForceUpdate = true;
+        invalidateAllTiles();
+        if (isAsyncLayout() && mAdapterColumns != null) {
+            scheduleAsyncLayout(false);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (isAsyncLayout()) {
+            // nothing would draw the result
+            mLayoutGeneration++;
+        }
+    }
+
+    /**
+     * Updates the level range shared by all series to the union of their ranges.
+     */
+    private void updateLevelRange() {
+        if (mSource == null) {
+            return;
+        }
+        if (mAutoRange != AUTO_RANGE_NONE) {
+            updateAutoLevelRange();
+            return;
+        }
+        float minLevel = mSource.getMinLevel();
+        float maxLevel = mSource.getMaxLevel();
+        for (int i = 0, size = mSeries.size(); i < size; i++) {
+            DataSource source = mSeries.get(i).mSource;
+            minLevel = Math.min(minLevel, source.getMinLevel());
+            maxLevel = Math.max(maxLevel, source.getMaxLevel());
+        }
+        applyLevelRange(minLevel, maxLevel);
+    }
+
+    /**
+     * Updates the level range to the lowest and the highest level of all series, of all points
+     * or of the visible ones depending on {@link #mAutoRange}, with O(log n) queries of their range trees.
+     */
+    private void updateAutoLevelRange() {
+        int from = 0;
+        int to = getCount() - 1;
+        if (mAutoRange == AUTO_RANGE_VISIBLE) {
+            computeVisibleRange(getUnitWidth());
+            from = mFirstVisible;
+            to = mLastVisible;
+        }
+        if (to < from) {
+            // no points, keep the last range
+            return;
+        }
+        float minLevel = mRangeTree.getMin(from, to);
+        float maxLevel = mRangeTree.getMax(from, to);
+        for (int i = 0, size = mSeries.size(); i < size; i++) {
+            RangeTree tree = mSeries.get(i).mRangeTree;
+            int last = Math.min(to, tree.size() - 1);
+            if (from <= last) {
+                minLevel = Math.min(minLevel, tree.getMin(from, last));
+                maxLevel = Math.max(maxLevel, tree.getMax(from, last));
+            }
+        }
+        if (minLevel > maxLevel) {
+            // the points in range aren't in the trees yet, their insert notification follows
+            return;
+        }
+
+        if (mAnimateRange) {
+            animateLevelRange(minLevel, maxLevel);
+        } else {
+            applyLevelRange(minLevel, maxLevel);
+        }
+    }
+
+    private void animateLevelRange(float minLevel, float maxLevel) {
+        boolean running = mRangeAnimator != null && mRangeAnimator.isRunning();
+        if (running ? minLevel == mRangeToMin && maxLevel == mRangeToMax
+                : minLevel == mMinLevel && maxLevel == mMaxLevel) {
+            return;
+        }
+        if (mRangeAnimator == null) {
+            mRangeAnimator = ValueAnimator.ofFloat(0, 1);
+            mRangeAnimator.setDuration(RANGE_ANIMATION_DURATION);
+            mRangeAnimator.addUpdateListener(mRangeUpdateListener);
+        }
+        mRangeFromMin = mMinLevel;
+        mRangeFromMax = mMaxLevel;
+        mRangeToMin = minLevel;
+        mRangeToMax = maxLevel;
+        mRangeAnimator.cancel();
+        mRangeAnimator.start();
+    }
+
+    private final ValueAnimator.AnimatorUpdateListener mRangeUpdateListener = new ValueAnimator.AnimatorUpdateListener() {
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            float fraction = animation.getAnimatedFraction();
+            applyLevelRange(mRangeFromMin + (mRangeToMin - mRangeFromMin) * fraction,
+                    mRangeFromMax + (mRangeToMax - mRangeFromMax) * fraction);
+            invalidate();
+        }
+    };
+
+    private void applyLevelRange(float minLevel, float maxLevel) {
+        if (minLevel != mMinLevel || maxLevel != mMaxLevel) {
+            // every point moves vertically
+            mMinLevel = minLevel;
+            mMaxLevel = maxLevel;
+            updateProjection();
+            mForceUpdate = true;
+            invalidateAllTiles();
+            for (int i = 0, size = mSeries.size(); i < size; i++) {
+                mSeries.get(i).mDirty = true;
+            }
+        }
+    }
+
+    /**
+     * @param position index of a point
+     * @return y coordinate of the point in view
+     */
+    private float getPointY(int position) {
+        if (mProjectedY != null && mProjectedHeight == getHeight()
+                && mProjectedMinLevel == mMinLevel && mProjectedMaxLevel == mMaxLevel) {
+            return mProjectedY[position];
+        }
+        return getLevelY(mSource.getLevel(position));
+    }
+
+    /**
+     * @param source the primary data or the data of a series
+     * @param position index of a point
+     * @return y coordinate of the point in view
+     */
+    private float getPointY(DataSource source, int position) {
+        return source == mSource ? getPointY(position) : getLevelY(source.getLevel(position));
+    }
+
+    /**
+     * @param level level of a point
+     * @return y coordinate of the level in view
+     */
+    private float getLevelY(float level) {
+        return getHeight() - mContentPaddingBottom - (level - mMinLevel) * mPixelsPerLevel;
+    }
+
+    /**
+     * Computes the scale from levels to pixels, once per change of the level range or the size
+     * rather than for every point.
+     */
+    private void updateProjection() {
+        mPixelsPerLevel = CurveGeometry.getPixelsPerLevel(getHeight() - mContentPaddingTop - mContentPaddingBottom, mMinLevel, mMaxLevel);
+        updateYAxis();
+    }
+
+    private final AxisTicks mYTicks = new AxisTicks();
+    /**
+     * y of the ticks of {@link #mYTicks}, updated with the projection
+     */
+    private float[] mYTickY = new float[0];
+
+    public void setShowY(boolean showY) {
+        mShowY = showY;
+        updateYAxis();
+        invalidate();
+    }
+
+    /**
+     * Lays out the y axis for the current range and size, ticks are labeled and measured
+     * only when they change, so frames just draw them.
+     */
+    private void updateYAxis() {
+        if (!mShowY) {
+            return;
+        }
+        int contentHeight = getHeight() - mContentPaddingTop - mContentPaddingBottom;
+        // about three lines of text between ticks
+        int maxTicks = Math.max(2, (int) (contentHeight / (mYAxisPaint.getTextSize() * 3)));
+        if (mYTicks.update(mMinLevel, mMaxLevel, maxTicks)) {
+            mYTicks.measure(mYAxisPaint);
+        }
+        int count = mYTicks.getCount();
+        if (mYTickY.length < count) {
+            mYTickY = new float[count];
+        }
+        for (int i = 0; i < count; i++) {
+            mYTickY[i] = getLevelY(mYTicks.getValue(i));
+        }
+    }
+
+    private void drawYGrid(Canvas canvas) {
+        int width = getWidth();
+        for (int i = 0, count = mYTicks.getCount(); i < count; i++) {
+            canvas.drawLine(0, mYTickY[i], width, mYTickY[i], mGridPaint);
+        }
+    }
+
+    /**
+     * Draws the labels right aligned in a column at the start, each just above its gridline on a
+     * padded background of the view's color, so the curve passing under a label doesn't run through it.
+     */
+    private void drawYLabels(Canvas canvas) {
+        float gap = mYAxisPaint.getTextSize() / 4;
+        float right = gap + mYTicks.getMaxWidth();
+        float ascent = mYAxisPaint.ascent();
+        float descent = mYAxisPaint.descent();
+        for (int i = 0, count = mYTicks.getCount(); i < count; i++) {
+            float baseline = mYTickY[i] - gap;
+            canvas.drawRect(0, baseline + ascent - gap / 2, right + gap, baseline + descent, mYLabelBackgroundPaint);
+            canvas.drawText(mYTicks.getLabel(i), right - mYTicks.getWidth(i), baseline, mYAxisPaint);
+        }
+    }
+
+    private void clearData() {
+        // dot data
+        // dot text data
+        if (mAdapterColumns != null) {
+            mAdapterColumns.clear();
+        }
+        mContentPath.reset();
+        mContentTail.rewind();
+        mContentFillDirty = true;
+        // line data
+        // other data
+    }
+
+    private static final int DATA_ANIMATION_DURATION = 300;
+
+    private boolean mAnimateDataChanges = false;
+    private ValueAnimator mMorphAnimator;
+    /**
+     * true while a data change transition is drawn, see {@link #drawMorph(Canvas, float)}
+     */
+    private boolean mMorphing;
+    private float mMorphFraction;
+    /**
+     * captured by {@link #onChanged()} for an asynchronous layout, started when it is published
+     */
+    private boolean mMorphCaptured;
+    /**
+     * y of points [mMorphFirst, mMorphFirst + mMorphSize) before and after the change,
+     * only reallocated when more points are in view than ever before
+     */
+    private float[] mMorphFrom = new float[0];
+    private float[] mMorphTo = new float[0];
+    private int mMorphFirst;
+    private int mMorphSize;
+    private final Path mMorphPath = new Path();
+    private final Path mMorphFill = new Path();
+
+    /**
+     * Animates the curve from the old to the new levels on {@link Adapter#notifyDataSetChanged()}
+     * instead of jumping to them. Only the points in view move, the path is rewritten in place
+     * every frame while marks follow the points. Not used when points are less than a pixel apart.
+     */
+    public void setDataChangeAnimated(boolean animated) {
+        mAnimateDataChanges = animated;
+        if (!animated) {
+            endMorph();
+        }
+    }
+
+    /**
+     * Saves y of the points in view before a change.
+     * @return false if the change is not animated
+     */
+    private boolean captureMorph() {
+        if (!mAnimateDataChanges || getCount() == 0 || getWidth() == 0 || getUnitWidth() < 1) {
+            return false;
+        }
+        if (mMorphing) {
+            // nothing scrolled, continue from where the curve is now
+            for (int k = 0; k < mMorphSize; k++) {
+                mMorphFrom[k] += (mMorphTo[k] - mMorphFrom[k]) * mMorphFraction;
+            }
+            return true;
+        }
+        int first = mFirstVisible;
+        int last = Math.min(mLastVisible, getCount() - 1);
+        if (last < first) {
+            return false;
+        }
+        int size = last - first + 1;
+        if (mMorphFrom.length < size) {
+            mMorphFrom = new float[size];
+            mMorphTo = new float[size];
+        }
+        for (int i = first; i <= last; i++) {
+            mMorphFrom[i - first] = getPointY(i);
+        }
+        mMorphFirst = first;
+        mMorphSize = size;
+        return true;
+    }
+
+    /**
+     * Saves y of the captured points after the change and starts moving them.
+     */
+    private void startMorph() {
+        int last = Math.min(mMorphFirst + mMorphSize, getCount()) - 1;
+        if (last < mMorphFirst) {
+            return;
+        }
+        if (mRangeAnimator != null && mRangeAnimator.isRunning()) {
+            // the transition covers the new range as well
+            mRangeAnimator.end();
+        }
+        mMorphSize = last - mMorphFirst + 1;
+        for (int i = mMorphFirst; i <= last; i++) {
+            mMorphTo[i - mMorphFirst] = getPointY(i);
+        }
+        if (mMorphAnimator == null) {
+            mMorphAnimator = ValueAnimator.ofFloat(0, 1);
+            mMorphAnimator.setDuration(DATA_ANIMATION_DURATION);
+            mMorphAnimator.addUpdateListener(mMorphUpdateListener);
+        }
+        mMorphFraction = 0;
+        mMorphing = true;
+        mMorphAnimator.cancel();
+        mMorphAnimator.start();
+    }
+
+    private void endMorph() {
+        if (mMorphing) {
+            mMorphing = false;
+            mMorphAnimator.cancel();
+            invalidate();
+        }
+    }
+
+    private final ValueAnimator.AnimatorUpdateListener mMorphUpdateListener = new ValueAnimator.AnimatorUpdateListener() {
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            mMorphFraction = animation.getAnimatedFraction();
+            if (mMorphFraction >= 1) {
+                mMorphing = false;
+            }
+            invalidate();
+        }
+    };
+
+    /**
+     * @return y of a point in the current frame of a transition, its y if it isn't moving
+     */
+    private float getMorphY(int position) {
+        int k = position - mMorphFirst;
+        if (mMorphing && k >= 0 && k < mMorphSize) {
+            return mMorphFrom[k] + (mMorphTo[k] - mMorphFrom[k]) * mMorphFraction;
+        }
+        return getPointY(position);
+    }
+
+    /**
+     * Draws the primary curve and its decorations in the current frame of a transition,
+     * rewriting {@link #mMorphPath} through the points in view.
+     */
+    private void drawMorph(Canvas canvas, float unitWidth) {
+        int first = mFirstVisible;
+        int last = mLastVisible;
+        Path path = mMorphPath;
+        path.rewind();
+        float y0 = getMorphY(first);
+        path.moveTo(first * unitWidth, y0);
+        if (mSmoothing == SMOOTHING_MONOTONE) {
+            int count = getCount();
+            float y1 = first + 1 < count ? getMorphY(first + 1) : Float.NaN;
+            float m0 = MonotoneCubic.tangent(first > 0 ? getMorphY(first - 1) : Float.NaN, y0, y1);
+            for (int i = first + 1; i <= last; i++) {
+                float y2 = i + 1 < count ? getMorphY(i + 1) : Float.NaN;
+                float m1 = MonotoneCubic.tangent(y0, y1, y2);
+                MonotoneCubic.cubicTo(path, i * unitWidth, y0, m0, y1, m1, unitWidth);
+                y0 = y1;
+                y1 = y2;
+                m0 = m1;
+            }
+        } else {
+            for (int i = first + 1; i <= last; i++) {
+                path.lineTo(i * unitWidth, getMorphY(i));
+            }
+        }
+        if (mFillArea) {
+            buildFillPath(mMorphFill, path, first * unitWidth, last * unitWidth);
+            canvas.drawPath(mMorphFill, mBackgroundPaint);
+        }
+        canvas.drawPath(path, mContentPaint);
+        drawDecorations(canvas, unitWidth, first, last);
+    }
 
-        canvas.drawColor(mFillColor);
+    /**
+     * height the shader of {@link #mBackgroundPaint} was created for, -1 if it needs to be created
+     */
+    private int mFillShaderHeight = -1;
 
-        if (mDecorations == null || mDecorations.size() == 0) {
+    /**
+     * Fills the area between the primary curve and the x axis with a vertical gradient. The area is
+     * derived from the path of the curve whenever it is rebuilt, so it is culled and cached along with it.
+     */
+    public void setAreaFillEnabled(boolean enabled) {
+        if (enabled == mFillArea) {
             return;
         }
+        mFillArea = enabled;
+        // the path is built without a separate tail while filling
+        mForceUpdate = true;
+        mContentPictureDirty = true;
+        invalidateAllTiles();
+        invalidate();
+    }
 
-        float scaleX = 1f;
-        int unitWidth = mUnitWidth;
-        if (mShowAll) {
-            unitWidth = (getWidth() - mContentPaddingStart - mContentPaddingEnd) / (mDecorations.size() - 1);
+    /**
+     * @param topColor color of the fill at the top of the content area
+     * @param bottomColor color of the fill at the x axis
+     */
+    public void setAreaFillColors(int topColor, int bottomColor) {
+        mFillTopColor = topColor;
+        mFillBottomColor = bottomColor;
+        mFillShaderHeight = -1;
+        mContentPictureDirty = true;
+        invalidateAllTiles();
+        invalidate();
+    }
+
+    /**
+     * Creates the gradient of the fill, once per height.
+     */
+    private void updateFillShader() {
+        int height = getHeight();
+        if (height != mFillShaderHeight) {
+            mFillShaderHeight = height;
+            mBackgroundPaint.setShader(new LinearGradient(0, mContentPaddingTop, 0, height - mContentPaddingBottom,
+                    mFillTopColor, mFillBottomColor, Shader.TileMode.CLAMP));
         }
+    }
+
+    /**
+     * Sets fill to the area between a path and the x axis.
+     * @param firstX x where the path starts
+     * @param lastX x where the path ends
+     */
+    private void buildFillPath(Path fill, Path path, float firstX, float lastX) {
+        float bottomY = getHeight() - mContentPaddingBottom;
+        fill.set(path);
+        fill.lineTo(lastX, bottomY);
+        fill.lineTo(firstX, bottomY);
+        fill.close();
+    }
 
-        if (mContentPath.isEmpty() || mForceUpdate) {
-            mForceUpdate = false;
-            int height = getHeight();
-            int heightPerLevel = (height - mContentPaddingTop - mContentPaddingBottom) / (mMaxLevel - mMinLevel);
+    /**
+     * corners of the polyline are rounded by a {@link CornerPathEffect} of radius corner, applied on every draw
+     */
+    public static final int SMOOTHING_CORNER = 0;
+    /**
+     * points are joined by monotone cubic segments, computed once per data or size change,
+     * which never overshoot the levels of the points they join
+     */
+    public static final int SMOOTHING_MONOTONE = 1;
 
-            mContentPath.moveTo(0, height - mContentPaddingBottom - (mDecorations.get(0).mLevel - mMinLevel) * heightPerLevel);
-            for (int i = 1; i < mDecorations.size(); i++) {
-                mContentPath.lineTo(i * unitWidth * scaleX, height - mContentPaddingBottom - (mDecorations.get(i).mLevel - mMinLevel) * heightPerLevel);
+    /**
+     * @param smoothing {@link #SMOOTHING_CORNER} or {@link #SMOOTHING_MONOTONE}
+     */
+    public void setSmoothing(int smoothing) {
+        if (smoothing == mSmoothing) {
+            return;
+        }
+        mSmoothing = smoothing;
+        PathEffect effect = smoothing == SMOOTHING_CORNER ? mCornerPathEffect : null;
+        mForceUpdate = true;
+        for (int i = 0, size = mSeries.size(); i < size; i++) {
+            Series series = mSeries.get(i);
+            series.mDirty = true;
+            // series added by color share the effect of the primary curve
+            if (series.mPaint.getPathEffect() == mContentPaint.getPathEffect()) {
+                series.mPaint.setPathEffect(effect);
             }
         }
+        mContentPaint.setPathEffect(effect);
+        mBackgroundPaint.setPathEffect(effect);
+        invalidateAllTiles();
+        invalidate();
+    }
 
-        canvas.save();
-        canvas.translate(mOffsetX + mContentPaddingStart, 0);
+    public int getSmoothing() {
+        return mSmoothing;
+    }
 
-        canvas.drawPath(mContentPath, mContentPaint);
+    /**
+     * levels range from {@link DataSource#getMinLevel()} to {@link DataSource#getMaxLevel()}
+     */
+    public static final int AUTO_RANGE_NONE = 0;
+    /**
+     * levels range from the lowest to the highest level of all points
+     */
+    public static final int AUTO_RANGE_ALL = 1;
+    /**
+     * levels range from the lowest to the highest level of the points in view, following scrolling
+     */
+    public static final int AUTO_RANGE_VISIBLE = 2;
 
-        int heightPerLevel = (getHeight() - mContentPaddingTop - mContentPaddingBottom) / (mMaxLevel - mMinLevel);
-        for (int i = 0; i < mDecorations.size(); i++) {
-            ItemDecoration decoration = mDecorations.get(i);
+    private static final int RANGE_ANIMATION_DURATION = 250;
 
-            int bottomY = getHeight() - mContentPaddingBottom;
-            int dotX = (int) (unitWidth * scaleX * i);
-            int dotY = bottomY - (mDecorations.get(i).mLevel - mMinLevel) * heightPerLevel;
-            if (mShowXText) {
-                int offsetX = getTextOffsetX(mXAxisPaint, decoration.mXAxisText, Gravity.CENTER_HORIZONTAL);
-                canvas.drawText(decoration.mXAxisText, dotX + offsetX, bottomY + mAxisTextSize, mXAxisPaint);
-            }
-            for (Mark mark : decoration.mMarks) {
-                int offsetX = getTextOffsetX(mDotTextPaint, mark.content, mark.gravity) + mark.marginStart - mark.marginEnd;
-                int offsetY = getTextOffsetY(mDotTextPaint, mark.gravity) + mark.marginTop - mark.marginBottom;
+    private int mAutoRange = AUTO_RANGE_NONE;
+    /**
+     * min/max of the primary data, maintained incrementally while {@link #mAutoRange} is set
+     */
+    private RangeTree mRangeTree;
+    private boolean mAnimateRange = false;
+    private ValueAnimator mRangeAnimator;
+    private float mRangeFromMin;
+    private float mRangeFromMax;
+    private float mRangeToMin;
+    private float mRangeToMax;
 
-                canvas.drawText(mark.content, dotX + offsetX, dotY + offsetY, mDotTextPaint);
+    /**
+     * Computes the level range from the data instead of taking it from the adapter or data source.
+     * The lowest and the highest level are kept in a segment tree, updated in O(log n) per changed,
+     * appended or evicted point, so streams don't rescan the data on every change.
+     * @param mode {@link #AUTO_RANGE_NONE}, {@link #AUTO_RANGE_ALL} or {@link #AUTO_RANGE_VISIBLE}
+     */
+    public void setAutoRange(int mode) {
+        if (mode == mAutoRange) {
+            return;
+        }
+        mAutoRange = mode;
+        if (mode == AUTO_RANGE_NONE) {
+            mRangeTree = null;
+        } else {
+            mRangeTree = new RangeTree();
+            if (mSource != null) {
+                mRangeTree.rebuild(mSource, getCount());
             }
         }
-
-        canvas.restore();
-        if (mShowXLine) {
-            canvas.drawLine(0, getHeight() - mContentPaddingBottom, getWidth(), getHeight() - mContentPaddingBottom, mContentPaint);
+        for (int i = 0, size = mSeries.size(); i < size; i++) {
+            Series series = mSeries.get(i);
+            series.mRangeTree = mode == AUTO_RANGE_NONE ? null : new RangeTree();
+            if (series.mRangeTree != null) {
+                series.mRangeTree.rebuild(series.mSource, series.mSource.getCount());
+            }
         }
+        updateLevelRange();
+        invalidate();
     }
 
-    private int getTextOffsetY(TextPaint paint, int gravity) {
-        int height = (int) (paint.getFontMetrics().descent - paint.getFontMetrics().ascent);
-        int offset = (int) (paint.getFontMetrics().descent + paint.getFontMetrics().ascent) / 2;
-        if ((gravity & Gravity.CENTER_VERTICAL) != 0) {
-            offset += height / 2;
-        } else if ((gravity & Gravity.BOTTOM) != 0) {
-            offset += height;
+    /**
+     * @param animated true to animate changes of an automatic level range instead of jumping
+     */
+    public void setAutoRangeAnimated(boolean animated) {
+        mAnimateRange = animated;
+        if (!animated && mRangeAnimator != null) {
+            mRangeAnimator.cancel();
         }
-        return offset;
     }
 
-    private int getTextOffsetX(TextPaint paint, String s, int gravity) {
-        int width = (int) paint.measureText(s);
-        int offset = 0;
-        if ((gravity & Gravity.CENTER_HORIZONTAL) != 0) {
-            offset = - width / 2;
-        } else if ((gravity & Gravity.START) != 0) {
-            offset = - width;
-        }
+    private final List<Series> mSeries = new ArrayList<>();
 
-        return offset;
+    /**
+     * Adds a curve drawn over the primary data set by {@link #setAdapter(Adapter)} or
+     * {@link #setDataSource(DataSource)}, e.g. the min and max next to an average. All series share
+     * the x positions, the visible range, the axis and the scroll state of the primary data, so each
+     * extra series only costs building and drawing its path. Points of a series beyond the
+     * primary data are not drawn, the level range is the union of the ranges of all series.
+     * @param source data of the series
+     * @param color color of the curve, drawn with the stroke width and smoothing of the primary curve
+     * @return the series, for {@link #removeSeries(Series)}
+     */
+    public Series addSeries(DataSource source, int color) {
+        Paint paint = new Paint(mContentPaint);
+        paint.setColor(color);
+        return addSeries(source, paint);
     }
 
-    public void setOffsetX(int offsetX) {
-        this.mOffsetX = offsetX;
+    /**
+     * @param source data of the series
+     * @param paint paint to draw the curve with
+     * @return the series, for {@link #removeSeries(Series)}
+     * @see #addSeries(DataSource, int)
+     */
+    public Series addSeries(DataSource source, Paint paint) {
+        Series series = new Series(source, paint);
+        source.registerDataSetObserver(series.mObserver);
+        mSeries.add(series);
+        onSeriesChanged(series);
+        return series;
     }
 
-    int mLastX;
-    VelocityTracker mVelocityTracker;
-    int mMaxVelocity;
-
-    private void acquireVelocityTracker(MotionEvent event) {
-        if (mVelocityTracker == null) {
-            mVelocityTracker = VelocityTracker.obtain();
+    public void removeSeries(Series series) {
+        if (mSeries.remove(series)) {
+            series.mSource.unregisterDataSetObserver(series.mObserver);
+            mContentPictureDirty = true;
+            updateLevelRange();
+            invalidate();
         }
-        mVelocityTracker.addMovement(event);
     }
 
-    private void releaseVelocityTracker() {
-        if (mVelocityTracker != null) {
-            mVelocityTracker.clear();
-            mVelocityTracker.recycle();
-            mVelocityTracker = null;
+    public void clearSeries() {
+        for (int i = mSeries.size() - 1; i >= 0; i--) {
+            removeSeries(mSeries.get(i));
         }
     }
 
-    @Override
-    public boolean onTouchEvent(MotionEvent event) {
-        if (mShowAll) {
-            return false;
-        }
-        acquireVelocityTracker(event);
-        final VelocityTracker velocityTracker = mVelocityTracker;
-        switch (event.getAction()) {
-            case MotionEvent.ACTION_DOWN:
-                mLastX = (int) event.getRawX();
-                break;
-            case MotionEvent.ACTION_MOVE:
-                int offset = (int) (mOffsetX + (event.getRawX() - mLastX));
-                offset = checkOffset(offset);
-                setOffsetX(offset);
-                mLastX = (int) event.getRawX();
-                invalidate();
-                break;
-            case MotionEvent.ACTION_UP:
-                velocityTracker.computeCurrentVelocity(1000, mMaxVelocity);
-                final float velocityX = velocityTracker.getXVelocity();
-                final int initialOffset = mOffsetX;
-                ValueAnimator animator = ValueAnimator.ofFloat(velocityX, 0);
-                final int duration = 300;
-                animator.setDuration(duration);
-                animator.setInterpolator(new DecelerateInterpolator());
-                animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                    @Override
-                    public void onAnimationUpdate(ValueAnimator animation) {
-                        float v = (Float) animation.getAnimatedValue();
-                        int t = (int) animation.getCurrentPlayTime();
-                        int d = (int) (velocityX * duration * 1.0f / 1000 / 2 - v * (duration - t) * 1.0f / 1000 / 2);
-                        setOffsetX(checkOffset(initialOffset + d));
-                        invalidate();
-                    }
-                });
-                animator.start();
-                break;
+    private void onSeriesChanged(Series series) {
+        if (mAutoRange != AUTO_RANGE_NONE) {
+            if (series.mRangeTree == null) {
+                series.mRangeTree = new RangeTree();
+            }
+            series.mRangeTree.rebuild(series.mSource, series.mSource.getCount());
         }
-        return true;
+        series.mDirty = true;
+        series.mDownsampler.invalidate();
+        series.mLodPyramid.invalidate();
+        onSeriesUpdated();
     }
 
-    /**
-     * offset > 0, scroll to left
-     * offset < 0, scroll to right
-     * normally, offset should <= 0
-     * @param offset offset to scroll horizontally
-     * @return fixed offset, not to exceed limit
-     */
-    private int checkOffset(int offset) {
-        // only scroll when paint width > view width
-        int paintWdith = (mDecorations.size() - 1) * mUnitWidth + mContentPaddingStart + mContentPaddingEnd;
-        if (paintWdith < getWidth()) {
-            return mOffsetX;
+    private void onSeriesItemRangeChanged(Series series, int positionStart, int itemCount) {
+        DataSource source = series.mSource;
+        if (series.mRangeTree != null) {
+            for (int i = positionStart; i < positionStart + itemCount; i++) {
+                series.mRangeTree.set(i, source.getLevel(i));
+            }
         }
+        series.mDownsampler.invalidate();
+        series.mLodPyramid.invalidateFrom(positionStart);
+        // smoothed segments also bend with the levels of the points next to them
+        int reach = mSmoothing == SMOOTHING_MONOTONE ? 1 : 0;
+        if (positionStart - reach <= series.mPathEnd && positionStart + itemCount + reach > series.mPathStart) {
+            series.mDirty = true;
+        }
+        onSeriesUpdated();
+    }
 
-        if (offset > 0) {
-            offset = 0;
+    private void onSeriesItemRangeInserted(Series series, int positionStart, int itemCount) {
+        DataSource source = series.mSource;
+        if (series.mRangeTree != null) {
+            if (positionStart == series.mRangeTree.size()) {
+                for (int i = positionStart; i < positionStart + itemCount; i++) {
+                    series.mRangeTree.append(source.getLevel(i));
+                }
+            } else {
+                series.mRangeTree.rebuild(source, source.getCount());
+            }
         }
-        if (offset < getWidth() - paintWdith) {
-            offset = getWidth() - paintWdith;
+        series.mDownsampler.invalidate();
+        series.mLodPyramid.invalidateFrom(positionStart);
+
+        int end = positionStart + itemCount - 1;
+        if (end == source.getCount() - 1 && end < getCount() && !mShowAll && getUnitWidth() >= 1
+                && mSmoothing != SMOOTHING_MONOTONE && !series.mDirty && !series.mPath.isEmpty()
+                && series.mPathEnd == positionStart - 1
+                && series.mPathEnd - series.mPathStart < MAX_PATH_WINDOW_SCREENS * (mLastVisible - mFirstVisible + 1)) {
+            // path ends at the old last point, extend it instead of rebuilding, as for the primary path
+            float unitWidth = getUnitWidth();
+            for (int i = positionStart; i <= end; i++) {
+                series.mPath.lineTo(i * unitWidth, getPointY(source, i));
+            }
+            series.mPathEnd = end;
+            mContentPictureDirty = true;
+        } else if (positionStart <= series.mPathEnd || mShowAll) {
+            series.mDirty = true;
         }
-        return offset;
+        onSeriesUpdated();
     }
 
-    private Adapter mAdapter;
-
-    public void setAdapter(Adapter adapter) {
-        if (mAdapter != null) {
-            mAdapter.unregisterDataSetObserver(this);
+    private void onSeriesItemRangeRemoved(Series series, int positionStart, int itemCount) {
+        DataSource source = series.mSource;
+        if (series.mRangeTree != null) {
+            if (positionStart == 0) {
+                series.mRangeTree.removeFirst(itemCount);
+            } else {
+                series.mRangeTree.rebuild(source, source.getCount());
+            }
         }
-        mAdapter = adapter;
-        adapter.registerDataSetObserver(this);
-
-        updateAdapterData();
+        series.mDownsampler.invalidate();
+        series.mLodPyramid.invalidateFrom(positionStart);
+
+        if (positionStart == 0 && !mShowAll && getUnitWidth() >= 1 && !series.mDirty && !series.mPath.isEmpty()
+                && itemCount <= series.mPathEnd) {
+            // points shift left by itemCount units, move the path along instead of rebuilding it
+            series.mPath.offset(-itemCount * getUnitWidth(), 0);
+            series.mPathStart -= itemCount;
+            series.mPathEnd -= itemCount;
+            mContentPictureDirty = true;
+            // with smoothing, the first point lost its neighbour and its segment changes shape too
+            if (series.mPathStart < (mSmoothing == SMOOTHING_MONOTONE ? 1 : 0)) {
+                series.mDirty = true;
+            }
+        } else if (positionStart <= series.mPathEnd || mShowAll) {
+            series.mDirty = true;
+        }
+        onSeriesUpdated();
     }
 
-    @Override
-    public void onChanged() {
-        updateAdapterData();
+    private void onSeriesUpdated() {
+        updateLevelRange();
+        measureVisibleTexts();
         invalidate();
     }
 
-    private int mMinLevel = 0;
-    private int mMaxLevel = 100;
-    private SparseArray<ItemDecoration> mDecorations = new SparseArray<>();
-
-    private boolean mForceUpdate = false;
-
+    /**
+     * A curve drawn in addition to the primary data, see {@link #addSeries(DataSource, int)}.
+     */
+    public final class Series {
+        private final DataSource mSource;
+        private final Paint mPaint;
+        private final Path mPath = new Path();
+        private final Downsampler mDownsampler = new Downsampler();
+        private final LodPyramid mLodPyramid = new LodPyramid();
+        private RangeTree mRangeTree;
+        /**
+         * index range and unit width of {@link #mPath}, the same window as the primary path
+         */
+        private int mPathStart;
+        private int mPathEnd = -1;
+        private float mPathUnitWidth;
+        private boolean mDirty = true;
 
-    private void updateAdapterData() {
-        mForceUpdate = true;
-        clearData();
-        if (mAdapter == null) {
-            return;
-        }
+        /**
+         * updates range tree, pyramid and path of the series by the changed range, the same way as
+         * for the primary data, so appending to a long series doesn't rebuild it
+         */
+        private final DataObserver mObserver = new DataObserver() {
+            @Override
+            public void onChanged() {
+                onSeriesChanged(Series.this);
+            }
 
-        mMinLevel = mAdapter.getMinLevel();
-        mMaxLevel = mAdapter.getMaxLevel();
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                onSeriesItemRangeChanged(Series.this, positionStart, itemCount);
+            }
 
-        for (int i = 0; i < mAdapter.getCount(); i++) {
-            ItemDecoration decoration = new ItemDecoration();
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                onSeriesItemRangeInserted(Series.this, positionStart, itemCount);
+            }
 
-            int level = mAdapter.getLevel(i);
-            Set<Mark> marks = mAdapter.onCreateMarks(i);
-            String xAxisText = mAdapter.getXAxisText(i);
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                onSeriesItemRangeRemoved(Series.this, positionStart, itemCount);
+            }
+        };
 
-            decoration.mLevel = level;
-            decoration.mMarks = marks;
-            decoration.mXAxisText = xAxisText;
+        private Series(DataSource source, Paint paint) {
+            mSource = source;
+            mPaint = paint;
+        }
 
-            mAdapter.decorate(decoration, i);
-            mDecorations.append(i, decoration);
+        public DataSource getSource() {
+            return mSource;
         }
-    }
 
-    private void clearData() {
-        // dot data
-        // dot text data
-        mDecorations.clear();
-        mContentPath.reset();
-        // line data
-        // other data
+        /**
+         * @return paint of the curve, call {@link CurveView#invalidate()} after changing it
+         */
+        public Paint getPaint() {
+            return mPaint;
+        }
     }
 
     public abstract static class Adapter {
 
         private final DataObservable mDataSetObservable = new DataObservable();
 
+        /**
+         * @return observable notifying observers of this adapter, counting merged notifications
+         */
+        public DataObservable getDataObservable() {
+            return mDataSetObservable;
+        }
+
         public void registerDataSetObserver(DataObserver observer) {
             mDataSetObservable.registerObserver(observer);
         }
@@ -397,11 +2826,45 @@ public class CurveView extends View implements DataObserver {
         /**
          * Notifies the attached observers that the underlying data has been changed
          * and any View reflecting the data set should refresh itself.
+         * Like the other notify methods, it can be called from any thread, observers are
+         * notified on main thread in the next frame, see {@link DataObservable}.
          */
         public void notifyDataSetChanged() {
             mDataSetObservable.notifyChanged();
         }
 
+        /**
+         * Notifies the attached observers that the items in
+         * [positionStart, positionStart + itemCount) have changed in place,
+         * only those items are read from the adapter again.
+         */
+        public void notifyItemRangeChanged(int positionStart, int itemCount) {
+            mDataSetObservable.notifyItemRangeChanged(positionStart, itemCount);
+        }
+
+        /**
+         * Notifies the attached observers that itemCount items have been inserted at positionStart.
+         */
+        public void notifyItemRangeInserted(int positionStart, int itemCount) {
+            mDataSetObservable.notifyItemRangeInserted(positionStart, itemCount);
+        }
+
+        /**
+         * Notifies the attached observers that the items in
+         * [positionStart, positionStart + itemCount) have been removed.
+         */
+        public void notifyItemRangeRemoved(int positionStart, int itemCount) {
+            mDataSetObservable.notifyItemRangeRemoved(positionStart, itemCount);
+        }
+
+        /**
+         * Notifies the attached observers that one item has been appended to the end,
+         * that is, {@link #getCount()} has grown by one.
+         */
+        public void notifyItemAppended() {
+            mDataSetObservable.notifyItemRangeInserted(getCount() - 1, 1);
+        }
+
         /**
          * @return 点的数量
          */
@@ -430,6 +2893,8 @@ public class CurveView extends View implements DataObserver {
         /**
          * 设置点上的文字，每个mark是一个，可同时设置点的 8 个方向的文字
          * 注意: Gravity 应使用 CurveView.Gravity 类
+         * Called lazily, only for points about to be drawn, and again after the point was evicted
+         * from the cache or changed.
          *
          * @param position
          * @return
@@ -459,8 +2924,33 @@ public class CurveView extends View implements DataObserver {
          */
         public abstract int getLevel(int position);
 
+        /**
+         * Level with fractions, override as well as {@link #getLevel(int)} for data that is not integral,
+         * e.g. sensor readings, so they need not be scaled to ints. Only this one is drawn then.
+         * @param position index of the point
+         * @return level of the point, {@link #getLevel(int)} by default
+         */
+        public float getFloatLevel(int position) {
+            return getLevel(position);
+        }
+
+        /**
+         * @return lower bound of levels, {@link #getMinLevel()} by default
+         */
+        public float getFloatMinLevel() {
+            return getMinLevel();
+        }
+
+        /**
+         * @return upper bound of levels, {@link #getMaxLevel()} by default
+         */
+        public float getFloatMaxLevel() {
+            return getMaxLevel();
+        }
+
         /**
          * 获取第 i 个点 x 轴上的文字
+         * Called lazily like {@link #onCreateMarks(int)}.
          * @param i
          * @return
          */
@@ -470,6 +2960,140 @@ public class CurveView extends View implements DataObserver {
 
     }
 
+    /**
+     * Columns filled from an {@link Adapter}. Levels and the level range are read when data changes,
+     * x axis texts and marks only when a point is about to be drawn, and kept for recently drawn points.
+     * Texts and marks are only accessed on the UI thread. They aren't read while the adapter has
+     * changes the columns don't have yet, its positions may then point at other points or past its end.
+     */
+    static class AdapterColumns extends LevelColumns {
+        private static final int DEFAULT_DECORATION_CACHE_SIZE = 512;
+
+        private final Adapter mAdapter;
+        private final DecorationCache mDecorations = new DecorationCache(DEFAULT_DECORATION_CACHE_SIZE);
+        /**
+         * calls made to the adapter so far, for {@link CurveMetrics}
+         */
+        int mAdapterCalls;
+        /**
+         * true once the adapter changed and the columns are waiting to be replaced by an async layout
+         */
+        boolean mStale;
+
+        AdapterColumns(Adapter adapter) {
+            mAdapter = adapter;
+        }
+
+        /**
+         * Grows the cache to hold at least count points, so the points of a frame don't evict each other.
+         */
+        void ensureDecorationCapacity(int count) {
+            if (count > mDecorations.getMaxEntries()) {
+                mDecorations.setMaxEntries(count);
+            }
+        }
+
+        @Override
+        public String getXAxisText(int position) {
+            DecorationCache.Entry entry = getDecorations(position);
+            if (!entry.textLoaded) {
+                if (!isCurrent()) {
+                    return null;
+                }
+                entry.text = mAdapter.getXAxisText(position);
+                entry.textLoaded = true;
+                mAdapterCalls++;
+            }
+            return entry.text;
+        }
+
+        @Override
+        public int getMarkCount(int position) {
+            return getMarks(position).length;
+        }
+
+        @Override
+        public Mark getMark(int position, int index) {
+            return getMarks(position)[index];
+        }
+
+        private Mark[] getMarks(int position) {
+            DecorationCache.Entry entry = getDecorations(position);
+            if (entry.marks == null) {
+                if (!isCurrent()) {
+                    return EMPTY_MARKS;
+                }
+                entry.marks = toArray(mAdapter.onCreateMarks(position));
+                mAdapterCalls++;
+            }
+            return entry.marks;
+        }
+
+        private DecorationCache.Entry getDecorations(int position) {
+            DecorationCache.Entry entry = mDecorations.get(position);
+            return entry != null ? entry : mDecorations.put(position);
+        }
+
+        /**
+         * @return false while the adapter has changes not applied to the columns, notifications
+         * still queued or an async layout reading it again
+         */
+        private boolean isCurrent() {
+            return !mStale && !mAdapter.getDataObservable().hasPending();
+        }
+
+        @Override
+        public void insert(int position, int count) {
+            super.insert(position, count);
+            // cached positions shifted
+            mDecorations.clear();
+        }
+
+        @Override
+        public void remove(int position, int count) {
+            super.remove(position, count);
+            mDecorations.clear();
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            mDecorations.clear();
+        }
+
+        void loadAll() {
+            int count = mAdapter.getCount();
+            mAdapterCalls++;
+            for (int i = 0; i < count; i++) {
+                add(0);
+                load(i);
+            }
+            loadLevelRange();
+        }
+
+        /**
+         * Reads the level of a point, its texts and marks are read again on demand once cleared.
+         */
+        void load(int position) {
+            set(position, mAdapter.getFloatLevel(position));
+            mAdapterCalls++;
+        }
+
+        void clearDecorations(int positionStart, int itemCount) {
+            mDecorations.remove(positionStart, itemCount);
+        }
+
+        void loadLevelRange() {
+            setLevelRange(mAdapter.getFloatMinLevel(), mAdapter.getFloatMaxLevel());
+            mAdapterCalls += 2;
+        }
+
+    }
+
+    /**
+     * No longer used by CurveView, data of points is kept in {@link LevelColumns}.
+     */
+    @Deprecated
     public static class ItemDecoration {
         protected Set<Mark> mMarks = new HashSet<>();
         protected int mLevel;
@@ -4,17 +4,297 @@ import android.database.Observable;
 
 /**
  * Created by lixindong on 6/15/17.
+ *
+ * Notifications may be sent from any thread. They are queued and delivered on the main thread
+ * once per frame, merged into as few calls as describe the same change: adjacent changes, inserts
+ * and removes join into one range, and a batch that can't be described by ranges becomes a single
+ * {@link DataObserver#onChanged()}. Observers are kept in an array replaced on every registration
+ * and called on the array current at dispatch, so notifying never locks against registering.
  */
 
 public class DataObservable extends Observable<DataObserver> {
+    private static final DataObserver[] EMPTY_OBSERVERS = new DataObserver[0];
+
+    private static final int TYPE_CHANGED = 0;
+    private static final int TYPE_RANGE_CHANGED = 1;
+    private static final int TYPE_RANGE_INSERTED = 2;
+    private static final int TYPE_RANGE_REMOVED = 3;
+
+    /**
+     * registered observers, replaced under {@link #mRegistrationLock} on every registration.
+     * Used instead of {@link #mObservers}, so that registering touches no android code.
+     */
+    private volatile DataObserver[] mSnapshot = EMPTY_OBSERVERS;
+    private final Object mRegistrationLock = new Object();
+
+    /**
+     * queued notifications, guarded by {@link #mPendingLock}. At most two are queued: a removal
+     * at the start followed by an insertion, as a sliding window sends, anything else is merged
+     * into one. Further ticks of the window within the frame grow the same pair.
+     */
+    private final Object mPendingLock = new Object();
+    private final int[] mPendingType = new int[2];
+    private final int[] mPendingStart = new int[2];
+    private final int[] mPendingCount = new int[2];
+    private int mPendingSize;
+    private boolean mDispatchScheduled;
+    /**
+     * batch swapped out on dispatch, only touched on main thread
+     */
+    private final int[] mDispatchingType = new int[2];
+    private final int[] mDispatchingStart = new int[2];
+    private final int[] mDispatchingCount = new int[2];
+
+    private long mNotificationCount;
+    private long mDispatchCount;
+
+    /**
+     * created on the first notification, guarded by {@link #mPendingLock}
+     */
+    private FrameScheduler mScheduler;
+
+    private final Runnable mDispatch = new Runnable() {
+        @Override
+        public void run() {
+            dispatchPending();
+        }
+    };
+
+    @Override
+    public void registerObserver(DataObserver observer) {
+        if (observer == null) {
+            throw new IllegalArgumentException("The observer is null.");
+        }
+        synchronized (mRegistrationLock) {
+            DataObserver[] observers = mSnapshot;
+            if (indexOf(observers, observer) >= 0) {
+                throw new IllegalStateException("Observer " + observer + " is already registered.");
+            }
+            DataObserver[] newObservers = new DataObserver[observers.length + 1];
+            System.arraycopy(observers, 0, newObservers, 0, observers.length);
+            newObservers[observers.length] = observer;
+            mSnapshot = newObservers;
+        }
+    }
+
+    @Override
+    public void unregisterObserver(DataObserver observer) {
+        if (observer == null) {
+            throw new IllegalArgumentException("The observer is null.");
+        }
+        synchronized (mRegistrationLock) {
+            DataObserver[] observers = mSnapshot;
+            int index = indexOf(observers, observer);
+            if (index < 0) {
+                throw new IllegalStateException("Observer " + observer + " was not registered.");
+            }
+            DataObserver[] newObservers = new DataObserver[observers.length - 1];
+            System.arraycopy(observers, 0, newObservers, 0, index);
+            System.arraycopy(observers, index + 1, newObservers, index, newObservers.length - index);
+            mSnapshot = newObservers;
+        }
+    }
+
+    @Override
+    public void unregisterAll() {
+        synchronized (mRegistrationLock) {
+            mSnapshot = EMPTY_OBSERVERS;
+        }
+    }
+
+    private static int indexOf(DataObserver[] observers, DataObserver observer) {
+        for (int i = 0; i < observers.length; i++) {
+            if (observers[i] == observer) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replaces how dispatches are scheduled, e.g. by tests on the JVM. Call before notifying.
+     */
+    void setFrameScheduler(FrameScheduler scheduler) {
+        synchronized (mPendingLock) {
+            mScheduler = scheduler;
+        }
+    }
+
     public void notifyChanged() {
-        synchronized(mObservers) {
-            // since onChanged() is implemented by the app, it could do anything, including
-            // removing itself from {@link mObservers} - and that could cause problems if
-            // an iterator is used on the ArrayList {@link mObservers}.
-            // to avoid such problems, just march thru the list in the reverse order.
-            for (int i = mObservers.size() - 1; i >= 0; i--) {
-                mObservers.get(i).onChanged();
+        enqueue(TYPE_CHANGED, 0, 0);
+    }
+
+    public void notifyItemRangeChanged(int positionStart, int itemCount) {
+        enqueue(TYPE_RANGE_CHANGED, positionStart, itemCount);
+    }
+
+    public void notifyItemRangeInserted(int positionStart, int itemCount) {
+        enqueue(TYPE_RANGE_INSERTED, positionStart, itemCount);
+    }
+
+    public void notifyItemRangeRemoved(int positionStart, int itemCount) {
+        enqueue(TYPE_RANGE_REMOVED, positionStart, itemCount);
+    }
+
+    /**
+     * @return number of notifications sent so far
+     */
+    public long getNotificationCount() {
+        synchronized (mPendingLock) {
+            return mNotificationCount;
+        }
+    }
+
+    /**
+     * @return number of notifications delivered so far, each counting once however many observers there are
+     */
+    public long getDispatchCount() {
+        synchronized (mPendingLock) {
+            return mDispatchCount;
+        }
+    }
+
+    /**
+     * @return number of notifications merged into others, that is, saved calls to every observer
+     */
+    public long getMergedCount() {
+        synchronized (mPendingLock) {
+            return mNotificationCount - mDispatchCount - mPendingSize;
+        }
+    }
+
+    /**
+     * @return true if notifications are queued and not delivered yet
+     */
+    boolean hasPending() {
+        synchronized (mPendingLock) {
+            return mPendingSize > 0;
+        }
+    }
+
+    private void enqueue(int type, int positionStart, int itemCount) {
+        if (type != TYPE_CHANGED && itemCount <= 0) {
+            return;
+        }
+        synchronized (mPendingLock) {
+            mNotificationCount++;
+            if (!mergeLocked(type, positionStart, itemCount)) {
+                // not describable by ranges any more, refresh everything
+                mPendingType[0] = TYPE_CHANGED;
+                mPendingSize = 1;
+            }
+            if (!mDispatchScheduled) {
+                mDispatchScheduled = true;
+                if (mScheduler == null) {
+                    mScheduler = new FrameScheduler.Main();
+                }
+                mScheduler.schedule(mDispatch);
+            }
+        }
+    }
+
+    /**
+     * @return false if the notification can't be merged into the queued ones
+     */
+    private boolean mergeLocked(int type, int start, int count) {
+        if (mPendingSize == 0 || type == TYPE_CHANGED) {
+            if (mPendingSize == 0) {
+                set(0, type, start, count);
+                mPendingSize = 1;
+                return true;
+            }
+            return false;
+        }
+        int last = mPendingSize - 1;
+        if (mPendingType[last] == TYPE_CHANGED) {
+            return true;
+        }
+        int lastStart = mPendingStart[last];
+        int lastEnd = lastStart + mPendingCount[last];
+        if (type == mPendingType[last]) {
+            switch (type) {
+                case TYPE_RANGE_CHANGED:
+                    if (start <= lastEnd && start + count >= lastStart) {
+                        int newStart = Math.min(start, lastStart);
+                        set(last, type, newStart, Math.max(start + count, lastEnd) - newStart);
+                        return true;
+                    }
+                    break;
+                case TYPE_RANGE_INSERTED:
+                    // inserted into or right next to the inserted block
+                    if (start >= lastStart && start <= lastEnd) {
+                        set(last, type, lastStart, lastEnd - lastStart + count);
+                        return true;
+                    }
+                    break;
+                case TYPE_RANGE_REMOVED:
+                    // the removed range ends where the last one was removed from
+                    if (start <= lastStart && start + count >= lastStart) {
+                        set(last, type, start, lastEnd - lastStart + count);
+                        return true;
+                    }
+                    break;
+            }
+        } else if (mPendingSize == 1 && mPendingType[0] == TYPE_RANGE_REMOVED && lastStart == 0
+                && type == TYPE_RANGE_INSERTED) {
+            set(1, type, start, count);
+            mPendingSize = 2;
+            return true;
+        } else if (mPendingSize == 2 && type == TYPE_RANGE_REMOVED && start == 0 && count <= lastStart) {
+            // the next tick of a sliding window, it removes only points before the inserted ones,
+            // which move towards the start
+            set(0, type, 0, mPendingCount[0] + count);
+            set(1, TYPE_RANGE_INSERTED, lastStart - count, mPendingCount[1]);
+            return true;
+        }
+        return false;
+    }
+
+    private void set(int index, int type, int start, int count) {
+        mPendingType[index] = type;
+        mPendingStart[index] = start;
+        mPendingCount[index] = count;
+    }
+
+    /**
+     * Delivers queued notifications right away instead of on the next frame.
+     * Must be called on main thread.
+     */
+    void dispatchPending() {
+        int size;
+        synchronized (mPendingLock) {
+            size = mPendingSize;
+            System.arraycopy(mPendingType, 0, mDispatchingType, 0, size);
+            System.arraycopy(mPendingStart, 0, mDispatchingStart, 0, size);
+            System.arraycopy(mPendingCount, 0, mDispatchingCount, 0, size);
+            mPendingSize = 0;
+            mDispatchCount += size;
+            if (mDispatchScheduled) {
+                mDispatchScheduled = false;
+                mScheduler.cancel(mDispatch);
+            }
+        }
+
+        DataObserver[] observers = mSnapshot;
+        for (int n = 0; n < size; n++) {
+            int start = mDispatchingStart[n];
+            int count = mDispatchingCount[n];
+            // march thru the observers in the reverse order, as they always were
+            for (int i = observers.length - 1; i >= 0; i--) {
+                switch (mDispatchingType[n]) {
+                    case TYPE_CHANGED:
+                        observers[i].onChanged();
+                        break;
+                    case TYPE_RANGE_CHANGED:
+                        observers[i].onItemRangeChanged(start, count);
+                        break;
+                    case TYPE_RANGE_INSERTED:
+                        observers[i].onItemRangeInserted(start, count);
+                        break;
+                    case TYPE_RANGE_REMOVED:
+                        observers[i].onItemRangeRemoved(start, count);
+                        break;
+                }
             }
         }
     }
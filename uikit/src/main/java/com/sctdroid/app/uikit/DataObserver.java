@@ -6,4 +6,20 @@ package com.sctdroid.app.uikit;
 
 public interface DataObserver {
     void onChanged();
+
+    /**
+     * items in [positionStart, positionStart + itemCount) have been changed in place
+     */
+    void onItemRangeChanged(int positionStart, int itemCount);
+
+    /**
+     * items have been inserted at positionStart, items after them shift by itemCount
+     */
+    void onItemRangeInserted(int positionStart, int itemCount);
+
+    /**
+     * items in [positionStart, positionStart + itemCount) have been removed,
+     * items after them shift back by itemCount
+     */
+    void onItemRangeRemoved(int positionStart, int itemCount);
 }
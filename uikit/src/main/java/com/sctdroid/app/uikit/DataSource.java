@@ -0,0 +1,53 @@
+package com.sctdroid.app.uikit;
+
+/**
+ * Random access data of a curve, read by {@link CurveView} only for the points it draws.
+ * Unlike {@link CurveView.Adapter}, nothing is copied out of a data source, so an implementation
+ * backed by primitive arrays (see {@link LevelColumns}) keeps the per point overhead minimal.
+ */
+
+public interface DataSource {
+    /**
+     * @return 点的数量
+     */
+    int getCount();
+
+    /**
+     * @param position index of the point
+     * @return level of the point, between {@link #getMinLevel()} and {@link #getMaxLevel()}
+     */
+    float getLevel(int position);
+
+    /**
+     * @return y 轴下限
+     */
+    float getMinLevel();
+
+    /**
+     * @return y 轴上限
+     */
+    float getMaxLevel();
+
+    /**
+     * @param position index of the point
+     * @return text on x axis, null if none
+     */
+    String getXAxisText(int position);
+
+    /**
+     * @param position index of the point
+     * @return number of marks of the point
+     */
+    int getMarkCount(int position);
+
+    /**
+     * @param position index of the point
+     * @param index index of the mark, less than {@link #getMarkCount(int)}
+     * @return the mark
+     */
+    CurveView.Mark getMark(int position, int index);
+
+    void registerDataSetObserver(DataObserver observer);
+
+    void unregisterDataSetObserver(DataObserver observer);
+}
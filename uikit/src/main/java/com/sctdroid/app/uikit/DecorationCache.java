@@ -0,0 +1,186 @@
+package com.sctdroid.app.uikit;
+
+import java.util.Arrays;
+
+/**
+ * X axis texts and marks of recently drawn points, keyed by position and evicted by the clock
+ * algorithm beyond a maximum number of points. Lets an adapter create texts and marks only for
+ * points that get drawn, instead of for every point on each data change.
+ *
+ * Positions are kept sorted in an int array, so lookups neither box nor lock, and entries of
+ * evicted points are reused, so once full the cache allocates nothing. Only used on the UI thread.
+ */
+
+final class DecorationCache {
+    static final class Entry {
+        /**
+         * x axis text, valid if textLoaded
+         */
+        String text;
+        boolean textLoaded;
+        /**
+         * marks, null until loaded
+         */
+        CurveView.Mark[] marks;
+
+        int position;
+        /**
+         * index in {@link #mClock}
+         */
+        int slot;
+        /**
+         * set on every use, cleared as the clock hand passes, an entry is evicted when passed
+         * without having been used since
+         */
+        boolean referenced;
+    }
+
+    /**
+     * positions of the entries, ascending, and the entries in the same order
+     */
+    private int[] mPositions;
+    private Entry[] mEntries;
+    private int mSize;
+    /**
+     * entries in insertion order, as passed by the clock hand
+     */
+    private Entry[] mClock;
+    private int mHand;
+    private int mMaxEntries;
+
+    DecorationCache(int maxEntries) {
+        mMaxEntries = maxEntries;
+        mPositions = new int[maxEntries];
+        mEntries = new Entry[maxEntries];
+        mClock = new Entry[maxEntries];
+    }
+
+    /**
+     * @return entry of the position, null if not cached
+     */
+    Entry get(int position) {
+        int index = Arrays.binarySearch(mPositions, 0, mSize, position);
+        if (index < 0) {
+            return null;
+        }
+        Entry entry = mEntries[index];
+        entry.referenced = true;
+        return entry;
+    }
+
+    /**
+     * @return an empty entry of a position not cached yet, to be filled by the caller
+     */
+    Entry put(int position) {
+        Entry entry;
+        if (mSize < mMaxEntries) {
+            entry = new Entry();
+        } else {
+            entry = removeAt(indexOf(nextVictim()));
+            entry.text = null;
+            entry.textLoaded = false;
+            entry.marks = null;
+        }
+        int index = ~Arrays.binarySearch(mPositions, 0, mSize, position);
+        System.arraycopy(mPositions, index, mPositions, index + 1, mSize - index);
+        System.arraycopy(mEntries, index, mEntries, index + 1, mSize - index);
+        mPositions[index] = position;
+        mEntries[index] = entry;
+        entry.position = position;
+        entry.referenced = true;
+        entry.slot = mSize;
+        mClock[mSize] = entry;
+        mSize++;
+        return entry;
+    }
+
+    /**
+     * Drops entries of positions in [positionStart, positionStart + itemCount).
+     */
+    void remove(int positionStart, int itemCount) {
+        int start = firstIndex(positionStart);
+        int end = firstIndex(positionStart + itemCount);
+        if (start == end) {
+            return;
+        }
+        int clockSize = mSize;
+        for (int i = start; i < end; i++) {
+            // the last entry of the clock takes the freed slot
+            Entry last = mClock[--clockSize];
+            last.slot = mEntries[i].slot;
+            mClock[last.slot] = last;
+            mClock[clockSize] = null;
+        }
+        System.arraycopy(mPositions, end, mPositions, start, mSize - end);
+        System.arraycopy(mEntries, end, mEntries, start, mSize - end);
+        Arrays.fill(mEntries, clockSize, mSize, null);
+        mSize = clockSize;
+        if (mHand >= mSize) {
+            mHand = 0;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(mEntries, 0, mSize, null);
+        Arrays.fill(mClock, 0, mSize, null);
+        mSize = 0;
+        mHand = 0;
+    }
+
+    int getMaxEntries() {
+        return mMaxEntries;
+    }
+
+    void setMaxEntries(int maxEntries) {
+        while (mSize > maxEntries) {
+            removeAt(indexOf(nextVictim()));
+        }
+        mPositions = Arrays.copyOf(mPositions, maxEntries);
+        mEntries = Arrays.copyOf(mEntries, maxEntries);
+        mClock = Arrays.copyOf(mClock, maxEntries);
+        mMaxEntries = maxEntries;
+    }
+
+    /**
+     * Moves the clock hand to the first entry not used since the hand last passed it,
+     * clearing the use of those passed.
+     */
+    private Entry nextVictim() {
+        while (mClock[mHand].referenced) {
+            mClock[mHand].referenced = false;
+            mHand = (mHand + 1) % mSize;
+        }
+        return mClock[mHand];
+    }
+
+    /**
+     * Removes the entry at index of the sorted arrays, the last entry of the clock takes its slot.
+     */
+    private Entry removeAt(int index) {
+        Entry entry = mEntries[index];
+        System.arraycopy(mPositions, index + 1, mPositions, index, mSize - index - 1);
+        System.arraycopy(mEntries, index + 1, mEntries, index, mSize - index - 1);
+        mSize--;
+        mEntries[mSize] = null;
+        Entry last = mClock[mSize];
+        last.slot = entry.slot;
+        mClock[last.slot] = last;
+        mClock[mSize] = null;
+        if (mHand >= mSize) {
+            mHand = 0;
+        }
+        return entry;
+    }
+
+    private int indexOf(Entry entry) {
+        return Arrays.binarySearch(mPositions, 0, mSize, entry.position);
+    }
+
+    /**
+     * @return index in the sorted arrays of the first position >= position
+     */
+    private int firstIndex(int position) {
+        int index = Arrays.binarySearch(mPositions, 0, mSize, position);
+        return index < 0 ? ~index : index;
+    }
+}
@@ -0,0 +1,97 @@
+package com.sctdroid.app.uikit;
+
+import java.util.Arrays;
+
+/**
+ * Reduces a series to the points that shape its line on screen: for every pixel column,
+ * the first, the lowest, the highest and the last point falling into the column (M4 aggregation).
+ * A line through the reduced points rasterizes the same as one through all of them,
+ * but has at most 4 vertices per pixel column.
+ *
+ * The result is cached until the unit width or the count changes or {@link #invalidate()} is called.
+ */
+
+final class Downsampler {
+    private int[] mIndices = new int[64];
+    private int mSize;
+
+    private boolean mValid;
+    private int mCount;
+    private float mUnitWidth;
+
+    /**
+     * Drops the cached result, call when levels change.
+     */
+    void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * @param source levels to reduce
+     * @param count number of points to read from source
+     * @param unitWidth horizontal distance between two points in pixels
+     * @return number of points kept, their indices are in {@link #getIndices()} in ascending order
+     */
+    int reduce(DataSource source, int count, float unitWidth) {
+        if (mValid && mCount == count && mUnitWidth == unitWidth) {
+            return mSize;
+        }
+        mValid = true;
+        mCount = count;
+        mUnitWidth = unitWidth;
+        mSize = 0;
+        if (count == 0) {
+            return 0;
+        }
+
+        int column = 0;
+        int first = 0;
+        int last = 0;
+        int minIndex = 0;
+        int maxIndex = 0;
+        float minLevel = source.getLevel(0);
+        float maxLevel = minLevel;
+        for (int i = 1; i < count; i++) {
+            int c = (int) (i * unitWidth);
+            float level = source.getLevel(i);
+            if (c != column) {
+                emit(first, minIndex, maxIndex, last);
+                column = c;
+                first = last = minIndex = maxIndex = i;
+                minLevel = maxLevel = level;
+            } else {
+                last = i;
+                if (level < minLevel) {
+                    minLevel = level;
+                    minIndex = i;
+                } else if (level > maxLevel) {
+                    maxLevel = level;
+                    maxIndex = i;
+                }
+            }
+        }
+        emit(first, minIndex, maxIndex, last);
+        return mSize;
+    }
+
+    int[] getIndices() {
+        return mIndices;
+    }
+
+    private void emit(int first, int minIndex, int maxIndex, int last) {
+        if (mSize + 4 > mIndices.length) {
+            mIndices = Arrays.copyOf(mIndices, mIndices.length * 2);
+        }
+        append(first);
+        append(Math.min(minIndex, maxIndex));
+        append(Math.max(minIndex, maxIndex));
+        append(last);
+    }
+
+    private void append(int index) {
+        // indices come in ascending order within a column, skip repeats
+        if (mSize == 0 || mIndices[mSize - 1] < index) {
+            mIndices[mSize++] = index;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.sctdroid.app.uikit;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * Runs a task on the main thread at the start of the next frame, the way data classes deliver
+ * their changes. They create the default one on first use and can be given another one, so that
+ * they can be created and driven on the JVM, where Looper and Choreographer aren't available.
+ */
+
+interface FrameScheduler {
+    /**
+     * Runs the task once in the next frame. May be called from any thread, not called again
+     * for the task before it ran or was cancelled.
+     */
+    void schedule(Runnable task);
+
+    /**
+     * Drops the task if it is scheduled and didn't run yet. Called on main thread.
+     */
+    void cancel(Runnable task);
+
+    /**
+     * Posts to the main thread's {@link Choreographer}, through its {@link Handler} when scheduling
+     * from another thread. Meant for a single task, scheduling allocates nothing.
+     */
+    final class Main implements FrameScheduler {
+        private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+        private volatile Runnable mTask;
+
+        private final Runnable mScheduleFrame = new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(mFrameCallback);
+            }
+        };
+
+        private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                mTask.run();
+            }
+        };
+
+        @Override
+        public void schedule(Runnable task) {
+            mTask = task;
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                Choreographer.getInstance().postFrameCallback(mFrameCallback);
+            } else {
+                mMainHandler.post(mScheduleFrame);
+            }
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            mMainHandler.removeCallbacks(mScheduleFrame);
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.sctdroid.app.uikit;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Columnar {@link DataSource}: levels are kept in a growable float array, x axis texts in a column
+ * allocated on first use, and marks in a sparse table holding entries only for points that
+ * have marks. A series without texts and marks costs about 4 bytes per point.
+ *
+ * Modifications don't notify observers by themselves, call the notify methods afterwards,
+ * the same way as with {@link CurveView.Adapter}.
+ */
+
+public class LevelColumns implements DataSource {
+    private static final int DEFAULT_CAPACITY = 16;
+    static final CurveView.Mark[] EMPTY_MARKS = new CurveView.Mark[0];
+
+    private final DataObservable mDataSetObservable = new DataObservable();
+
+    private float[] mLevels;
+    private int mSize;
+
+    /**
+     * x axis texts, null until the first text is stored
+     */
+    private String[] mTexts;
+
+    /**
+     * sparse mark table, positions in {@link #mMarkKeys} are sorted ascending
+     */
+    private int[] mMarkKeys = new int[0];
+    private CurveView.Mark[][] mMarkValues = new CurveView.Mark[0][];
+    private int mMarkSize;
+
+    private float mMinLevel = 0;
+    private float mMaxLevel = 100;
+
+    public LevelColumns() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LevelColumns(int initialCapacity) {
+        mLevels = new float[Math.max(1, initialCapacity)];
+    }
+
+    @Override
+    public int getCount() {
+        return mSize;
+    }
+
+    @Override
+    public float getLevel(int position) {
+        return mLevels[position];
+    }
+
+    @Override
+    public float getMinLevel() {
+        return mMinLevel;
+    }
+
+    @Override
+    public float getMaxLevel() {
+        return mMaxLevel;
+    }
+
+    public void setLevelRange(float minLevel, float maxLevel) {
+        mMinLevel = minLevel;
+        mMaxLevel = maxLevel;
+    }
+
+    @Override
+    public String getXAxisText(int position) {
+        String text = mTexts == null ? null : mTexts[position];
+        if (text == null) {
+            text = loadXAxisText(position);
+            if (text != null) {
+                setXAxisText(position, text);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Called when the text of a position is requested but not stored yet,
+     * subclasses can create texts lazily here.
+     * @param position index of the point
+     * @return text on x axis, null if none
+     */
+    protected String loadXAxisText(int position) {
+        return null;
+    }
+
+    @Override
+    public int getMarkCount(int position) {
+        int index = Arrays.binarySearch(mMarkKeys, 0, mMarkSize, position);
+        return index < 0 ? 0 : mMarkValues[index].length;
+    }
+
+    @Override
+    public CurveView.Mark getMark(int position, int index) {
+        return mMarkValues[Arrays.binarySearch(mMarkKeys, 0, mMarkSize, position)][index];
+    }
+
+    public void add(float level) {
+        ensureCapacity(mSize + 1);
+        mLevels[mSize++] = level;
+    }
+
+    public void addAll(float[] levels, int offset, int count) {
+        ensureCapacity(mSize + count);
+        System.arraycopy(levels, offset, mLevels, mSize, count);
+        mSize += count;
+    }
+
+    public void addAll(int[] levels, int offset, int count) {
+        ensureCapacity(mSize + count);
+        for (int i = 0; i < count; i++) {
+            mLevels[mSize + i] = levels[offset + i];
+        }
+        mSize += count;
+    }
+
+    /**
+     * @return columns holding a copy of the levels and the level range only, to be read on another thread
+     */
+    LevelColumns copyLevels() {
+        LevelColumns copy = new LevelColumns(mSize);
+        copy.addAll(mLevels, 0, mSize);
+        copy.setLevelRange(mMinLevel, mMaxLevel);
+        return copy;
+    }
+
+    public void set(int position, float level) {
+        mLevels[position] = level;
+    }
+
+    public void setXAxisText(int position, String text) {
+        if (mTexts == null) {
+            if (text == null) {
+                return;
+            }
+            mTexts = new String[mLevels.length];
+        }
+        mTexts[position] = text;
+    }
+
+    /**
+     * @param position index of the point
+     * @param marks marks of the point, null or empty to remove
+     */
+    public void setMarks(int position, CurveView.Mark[] marks) {
+        int index = Arrays.binarySearch(mMarkKeys, 0, mMarkSize, position);
+        boolean empty = marks == null || marks.length == 0;
+        if (index >= 0) {
+            if (empty) {
+                deleteMarkEntries(index, index + 1);
+            } else {
+                mMarkValues[index] = marks;
+            }
+        } else if (!empty) {
+            index = ~index;
+            if (mMarkSize == mMarkKeys.length) {
+                int capacity = Math.max(DEFAULT_CAPACITY, mMarkSize * 2);
+                mMarkKeys = Arrays.copyOf(mMarkKeys, capacity);
+                mMarkValues = Arrays.copyOf(mMarkValues, capacity);
+            }
+            System.arraycopy(mMarkKeys, index, mMarkKeys, index + 1, mMarkSize - index);
+            System.arraycopy(mMarkValues, index, mMarkValues, index + 1, mMarkSize - index);
+            mMarkKeys[index] = position;
+            mMarkValues[index] = marks;
+            mMarkSize++;
+        }
+    }
+
+    /**
+     * Opens a gap of count points at position, levels in the gap are 0 and have no text or mark.
+     */
+    public void insert(int position, int count) {
+        ensureCapacity(mSize + count);
+        System.arraycopy(mLevels, position, mLevels, position + count, mSize - position);
+        Arrays.fill(mLevels, position, position + count, 0);
+        if (mTexts != null) {
+            System.arraycopy(mTexts, position, mTexts, position + count, mSize - position);
+            Arrays.fill(mTexts, position, position + count, null);
+        }
+        for (int i = firstMarkEntry(position); i < mMarkSize; i++) {
+            mMarkKeys[i] += count;
+        }
+        mSize += count;
+    }
+
+    public void remove(int position, int count) {
+        System.arraycopy(mLevels, position + count, mLevels, position, mSize - position - count);
+        if (mTexts != null) {
+            System.arraycopy(mTexts, position + count, mTexts, position, mSize - position - count);
+            Arrays.fill(mTexts, mSize - count, mSize, null);
+        }
+        int start = firstMarkEntry(position);
+        deleteMarkEntries(start, firstMarkEntry(position + count));
+        for (int i = start; i < mMarkSize; i++) {
+            mMarkKeys[i] -= count;
+        }
+        mSize -= count;
+    }
+
+    /**
+     * Drops cached x axis texts in [position, position + count), they will be loaded again
+     * by {@link #loadXAxisText(int)} on demand.
+     */
+    public void clearXAxisTexts(int position, int count) {
+        if (mTexts != null) {
+            Arrays.fill(mTexts, position, position + count, null);
+        }
+    }
+
+    public void clear() {
+        mSize = 0;
+        mTexts = null;
+        Arrays.fill(mMarkValues, 0, mMarkSize, null);
+        mMarkSize = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mLevels.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, mLevels.length + (mLevels.length >> 1));
+        mLevels = Arrays.copyOf(mLevels, newCapacity);
+        if (mTexts != null) {
+            mTexts = Arrays.copyOf(mTexts, newCapacity);
+        }
+    }
+
+    /**
+     * @return index of the first mark entry whose position >= position
+     */
+    private int firstMarkEntry(int position) {
+        int index = Arrays.binarySearch(mMarkKeys, 0, mMarkSize, position);
+        return index < 0 ? ~index : index;
+    }
+
+    private void deleteMarkEntries(int start, int end) {
+        System.arraycopy(mMarkKeys, end, mMarkKeys, start, mMarkSize - end);
+        System.arraycopy(mMarkValues, end, mMarkValues, start, mMarkSize - end);
+        int newSize = mMarkSize - (end - start);
+        Arrays.fill(mMarkValues, newSize, mMarkSize, null);
+        mMarkSize = newSize;
+    }
+
+    static CurveView.Mark[] toArray(Set<CurveView.Mark> marks) {
+        if (marks == null || marks.isEmpty()) {
+            return EMPTY_MARKS;
+        }
+        return marks.toArray(new CurveView.Mark[marks.size()]);
+    }
+
+    /**
+     * @return observable notifying observers of this source, counting merged notifications
+     */
+    public DataObservable getDataObservable() {
+        return mDataSetObservable;
+    }
+
+    @Override
+    public void registerDataSetObserver(DataObserver observer) {
+        mDataSetObservable.registerObserver(observer);
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataObserver observer) {
+        mDataSetObservable.unregisterObserver(observer);
+    }
+
+    public void notifyDataSetChanged() {
+        mDataSetObservable.notifyChanged();
+    }
+
+    public void notifyItemRangeChanged(int positionStart, int itemCount) {
+        mDataSetObservable.notifyItemRangeChanged(positionStart, itemCount);
+    }
+
+    public void notifyItemRangeInserted(int positionStart, int itemCount) {
+        mDataSetObservable.notifyItemRangeInserted(positionStart, itemCount);
+    }
+
+    public void notifyItemRangeRemoved(int positionStart, int itemCount) {
+        mDataSetObservable.notifyItemRangeRemoved(positionStart, itemCount);
+    }
+
+    public void notifyItemAppended() {
+        mDataSetObservable.notifyItemRangeInserted(mSize - 1, 1);
+    }
+}
@@ -0,0 +1,143 @@
+package com.sctdroid.app.uikit;
+
+import java.util.Arrays;
+
+/**
+ * Level of detail pyramid of a series. Level k splits the points into buckets of 2^k points
+ * and keeps the index of the lowest and the highest point of each bucket, level k is aggregated
+ * from level k - 1. Drawing the buckets of the level whose buckets are about a pixel wide keeps
+ * the shape of the curve with a bounded number of vertices, however many points there are.
+ *
+ * Levels are built on demand and rebuilt only from the first invalidated point on,
+ * so appending points costs O(appended points). Levels precomputed in a {@link MappedSeries}
+ * are read from its file instead of being built.
+ */
+
+final class LodPyramid {
+    /**
+     * mMinIndex[k - 1][b] is the index of the lowest point in bucket b of level k, level 0 being the points
+     */
+    private int[][] mMinIndex = new int[0][];
+    private int[][] mMaxIndex = new int[0][];
+    private int mLevels;
+    private int mCount;
+    /**
+     * buckets covering points before this are up to date
+     */
+    private int mValidCount;
+    /**
+     * series whose precomputed levels are read, null when levels are built here
+     */
+    private MappedSeries mMapped;
+
+    /**
+     * @param unitWidth horizontal distance between two points in pixels
+     * @return the lowest level whose buckets are at least a pixel wide, 0 if points are
+     */
+    static int levelFor(float unitWidth) {
+        int level = 0;
+        while (level < 30 && (1 << level) * unitWidth < 1) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Marks buckets containing points from position on as outdated.
+     */
+    void invalidateFrom(int position) {
+        mValidCount = Math.min(mValidCount, Math.max(0, position));
+    }
+
+    void invalidate() {
+        mValidCount = 0;
+    }
+
+    /**
+     * Brings levels 1 to level up to date with the first count points of source.
+     */
+    void update(DataSource source, int count, int level) {
+        if (source instanceof MappedSeries && ((MappedSeries) source).getPyramidLevels() >= level) {
+            // mapped series never change
+            mMapped = (MappedSeries) source;
+            mCount = count;
+            return;
+        }
+        if (mMapped != null) {
+            mMapped = null;
+            mValidCount = 0;
+        }
+        int from = Math.min(mValidCount, count);
+        int built = mLevels;
+        if (level > mLevels) {
+            mMinIndex = Arrays.copyOf(mMinIndex, level);
+            mMaxIndex = Arrays.copyOf(mMaxIndex, level);
+            for (int k = mLevels + 1; k <= level; k++) {
+                mMinIndex[k - 1] = new int[0];
+                mMaxIndex[k - 1] = new int[0];
+            }
+            mLevels = level;
+        }
+        if (from == count && count == mCount && built == mLevels) {
+            return;
+        }
+        // levels built before stay in sync too, they are small compared to the lower ones
+        for (int k = 1; k <= mLevels; k++) {
+            build(source, count, k, k <= built ? from >> k : 0);
+        }
+        mCount = count;
+        mValidCount = count;
+    }
+
+    /**
+     * @return number of buckets in level
+     */
+    int getBucketCount(int level) {
+        return (mCount + (1 << level) - 1) >> level;
+    }
+
+    int getMinIndex(int level, int bucket) {
+        return mMapped != null ? mMapped.getMinIndex(level, bucket) : mMinIndex[level - 1][bucket];
+    }
+
+    int getMaxIndex(int level, int bucket) {
+        return mMapped != null ? mMapped.getMaxIndex(level, bucket) : mMaxIndex[level - 1][bucket];
+    }
+
+    private void build(DataSource source, int count, int level, int fromBucket) {
+        int buckets = (count + (1 << level) - 1) >> level;
+        if (mMinIndex[level - 1].length < buckets) {
+            int capacity = Math.max(buckets, mMinIndex[level - 1].length * 3 / 2);
+            mMinIndex[level - 1] = Arrays.copyOf(mMinIndex[level - 1], capacity);
+            mMaxIndex[level - 1] = Arrays.copyOf(mMaxIndex[level - 1], capacity);
+        }
+        int[] minIndex = mMinIndex[level - 1];
+        int[] maxIndex = mMaxIndex[level - 1];
+        for (int b = fromBucket; b < buckets; b++) {
+            int left = 2 * b;
+            int right = left + 1;
+            int leftMin, leftMax, rightMin, rightMax;
+            boolean hasRight;
+            if (level == 1) {
+                leftMin = leftMax = left;
+                rightMin = rightMax = right;
+                hasRight = right < count;
+            } else {
+                int[] childMin = mMinIndex[level - 2];
+                int[] childMax = mMaxIndex[level - 2];
+                leftMin = childMin[left];
+                leftMax = childMax[left];
+                hasRight = right < ((count + (1 << (level - 1)) - 1) >> (level - 1));
+                rightMin = hasRight ? childMin[right] : leftMin;
+                rightMax = hasRight ? childMax[right] : leftMax;
+            }
+            if (!hasRight) {
+                minIndex[b] = leftMin;
+                maxIndex[b] = leftMax;
+            } else {
+                minIndex[b] = source.getLevel(rightMin) < source.getLevel(leftMin) ? rightMin : leftMin;
+                maxIndex[b] = source.getLevel(rightMax) > source.getLevel(leftMax) ? rightMax : leftMax;
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.sctdroid.app.uikit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read only {@link DataSource} over a memory mapped series file, levels are read from the page cache
+ * on demand and never copied onto the Java heap, so opening a series costs the same however long it is.
+ *
+ * Files are written by {@link #write(File, float[], int, int, float, float, boolean)}, all values little endian:
+ * <pre>
+ *   header      magic "CVS1", version, count, pyramid levels, min level, max level, 8 reserved bytes
+ *   levels      count floats
+ *   pyramid     for each level k from 1 on: the index of the lowest point of every bucket of 2^k points,
+ *               then the index of the highest one, as ints
+ * </pre>
+ * The pyramid is the one {@link LodPyramid} would build, with it zoomed out curves are drawn
+ * without reading all levels first.
+ */
+
+public class MappedSeries implements DataSource {
+    private static final int MAGIC = 0x31535643; // "CVS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private final DataObservable mDataSetObservable = new DataObservable();
+
+    private final FloatBuffer mLevels;
+    private final int mCount;
+    private final float mMinLevel;
+    private final float mMaxLevel;
+    /**
+     * mMinIndex[k - 1] holds the bucket minimums of pyramid level k
+     */
+    private final IntBuffer[] mMinIndex;
+    private final IntBuffer[] mMaxIndex;
+
+    private MappedSeries(MappedByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a series file");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("unsupported series file version " + version);
+        }
+        mCount = buffer.getInt(8);
+        int pyramidLevels = buffer.getInt(12);
+        mMinLevel = buffer.getFloat(16);
+        mMaxLevel = buffer.getFloat(20);
+        if (mCount < 0 || pyramidLevels < 0 || buffer.capacity() < getFileSize(mCount, pyramidLevels)) {
+            throw new IOException("truncated series file");
+        }
+
+        mLevels = slice(buffer, HEADER_SIZE, mCount * 4).asFloatBuffer();
+        mMinIndex = new IntBuffer[pyramidLevels];
+        mMaxIndex = new IntBuffer[pyramidLevels];
+        int offset = HEADER_SIZE + mCount * 4;
+        for (int k = 1; k <= pyramidLevels; k++) {
+            int size = getBucketCount(mCount, k) * 4;
+            mMinIndex[k - 1] = slice(buffer, offset, size).asIntBuffer();
+            mMaxIndex[k - 1] = slice(buffer, offset + size, size).asIntBuffer();
+            offset += 2 * size;
+        }
+    }
+
+    /**
+     * Maps a series file, the mapping is released when the series is garbage collected.
+     * @throws IOException if the file can't be read or isn't a series file
+     */
+    public static MappedSeries open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // the mapping stays valid after the channel is closed
+            return new MappedSeries(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes levels to a series file, replacing its content.
+     * @param levels levels of the points
+     * @param offset index in levels of the first point
+     * @param count number of points
+     * @param minLevel lower bound of levels
+     * @param maxLevel upper bound of levels
+     * @param pyramid whether to precompute the level of detail pyramid, it takes about twice the size of the levels
+     */
+    public static void write(File file, float[] levels, int offset, int count,
+                             float minLevel, float maxLevel, boolean pyramid) throws IOException {
+        LevelColumns columns = new LevelColumns(count);
+        columns.addAll(levels, offset, count);
+        int pyramidLevels = 0;
+        LodPyramid lodPyramid = null;
+        if (pyramid) {
+            while (pyramidLevels < 30 && (1 << pyramidLevels) < count) {
+                pyramidLevels++;
+            }
+            lodPyramid = new LodPyramid();
+            lodPyramid.update(columns, count, pyramidLevels);
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long size = getFileSize(count, pyramidLevels);
+            raf.setLength(size);
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(count)
+                    .putInt(pyramidLevels)
+                    .putFloat(minLevel)
+                    .putFloat(maxLevel)
+                    .putLong(0);
+            buffer.asFloatBuffer().put(levels, offset, count);
+            buffer.position(HEADER_SIZE + count * 4);
+            for (int k = 1; k <= pyramidLevels; k++) {
+                int buckets = getBucketCount(count, k);
+                for (int b = 0; b < buckets; b++) {
+                    buffer.putInt(lodPyramid.getMinIndex(k, b));
+                }
+                for (int b = 0; b < buckets; b++) {
+                    buffer.putInt(lodPyramid.getMaxIndex(k, b));
+                }
+            }
+            buffer.force();
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static long getFileSize(int count, int pyramidLevels) {
+        long size = HEADER_SIZE + count * 4L;
+        for (int k = 1; k <= pyramidLevels; k++) {
+            size += getBucketCount(count, k) * 8L;
+        }
+        return size;
+    }
+
+    private static int getBucketCount(int count, int level) {
+        return (int) ((count + (1L << level) - 1) >> level);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int size) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.limit(offset + size);
+        // slices are big endian whatever the order of the buffer
+        return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return number of precomputed pyramid levels, 0 if the file has no pyramid
+     */
+    int getPyramidLevels() {
+        return mMinIndex.length;
+    }
+
+    int getMinIndex(int level, int bucket) {
+        return mMinIndex[level - 1].get(bucket);
+    }
+
+    int getMaxIndex(int level, int bucket) {
+        return mMaxIndex[level - 1].get(bucket);
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @Override
+    public float getLevel(int position) {
+        return mLevels.get(position);
+    }
+
+    @Override
+    public float getMinLevel() {
+        return mMinLevel;
+    }
+
+    @Override
+    public float getMaxLevel() {
+        return mMaxLevel;
+    }
+
+    @Override
+    public String getXAxisText(int position) {
+        return null;
+    }
+
+    @Override
+    public int getMarkCount(int position) {
+        return 0;
+    }
+
+    @Override
+    public CurveView.Mark getMark(int position, int index) {
+        throw new IndexOutOfBoundsException("MappedSeries has no marks");
+    }
+
+    @Override
+    public void registerDataSetObserver(DataObserver observer) {
+        mDataSetObservable.registerObserver(observer);
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataObserver observer) {
+        mDataSetObservable.unregisterObserver(observer);
+    }
+}
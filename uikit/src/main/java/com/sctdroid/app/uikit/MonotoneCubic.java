@@ -0,0 +1,50 @@
+package com.sctdroid.app.uikit;
+
+import android.graphics.Path;
+
+/**
+ * Monotone cubic interpolation of evenly spaced points (Fritsch-Butland tangents). The curve is
+ * monotone wherever the points are and passes through every point, so it never overshoots the
+ * lowest or the highest of them. The tangent at a point only depends on its neighbours, so
+ * segments of a longer curve can be built independently and still join smoothly.
+ */
+
+final class MonotoneCubic {
+    private MonotoneCubic() {
+    }
+
+    /**
+     * @param previous y of the previous point, NaN if none
+     * @param y y of the point
+     * @param next y of the next point, NaN if none
+     * @return slope at the point, in y per point
+     */
+    static float tangent(float previous, float y, float next) {
+        boolean hasPrevious = !Float.isNaN(previous);
+        boolean hasNext = !Float.isNaN(next);
+        if (!hasPrevious) {
+            return hasNext ? next - y : 0;
+        }
+        if (!hasNext) {
+            return y - previous;
+        }
+        float left = y - previous;
+        float right = next - y;
+        if (left * right <= 0) {
+            // a local extreme, flat so the curve doesn't go beyond it
+            return 0;
+        }
+        // harmonic mean, at most twice the smaller slope, which keeps the segment monotone
+        return 2 * left * right / (left + right);
+    }
+
+    /**
+     * Adds the segment from the current point of a path, y0 at x - unitWidth, to (x, y1).
+     * @param m0 slope at the start
+     * @param m1 slope at the end
+     */
+    static void cubicTo(Path path, float x, float y0, float m0, float y1, float m1, float unitWidth) {
+        float third = unitWidth / 3;
+        path.cubicTo(x - unitWidth + third, y0 + m0 / 3, x - third, y1 - m1 / 3, x, y1);
+    }
+}
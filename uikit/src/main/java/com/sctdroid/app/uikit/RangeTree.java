@@ -0,0 +1,148 @@
+package com.sctdroid.app.uikit;
+
+import java.util.Arrays;
+
+/**
+ * Segment tree of the lowest and the highest level of a series, answers the level range of
+ * any index range in O(log n). Changing, appending and dropping levels from the front, as a
+ * sliding window does, cost O(log n) amortized, other changes rebuild the tree in O(n).
+ *
+ * Leaves start at {@link #mBase}, dropping levels from the front moves it instead of shifting
+ * all leaves, they are compacted when appending reaches the end of the capacity.
+ */
+
+final class RangeTree {
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * mMin[1] is the root, the children of node i are 2i and 2i + 1, leaves are at [capacity, 2 * capacity)
+     */
+    private float[] mMin = new float[0];
+    private float[] mMax = new float[0];
+    private int mCapacity;
+    private int mBase;
+    private int mSize;
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Rebuilds the tree from the first count levels of a source.
+     */
+    void rebuild(DataSource source, int count) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < count) {
+            capacity <<= 1;
+        }
+        if (capacity != mCapacity) {
+            mCapacity = capacity;
+            mMin = new float[capacity * 2];
+            mMax = new float[capacity * 2];
+        }
+        Arrays.fill(mMin, Float.POSITIVE_INFINITY);
+        Arrays.fill(mMax, Float.NEGATIVE_INFINITY);
+        for (int i = 0; i < count; i++) {
+            float level = source.getLevel(i);
+            mMin[capacity + i] = level;
+            mMax[capacity + i] = level;
+        }
+        mBase = 0;
+        mSize = count;
+        buildNodes();
+    }
+
+    void set(int position, float level) {
+        setLeaf(position, level, level);
+    }
+
+    private void setLeaf(int position, float min, float max) {
+        int node = mCapacity + mBase + position;
+        mMin[node] = min;
+        mMax[node] = max;
+        for (node >>= 1; node > 0; node >>= 1) {
+            mMin[node] = Math.min(mMin[2 * node], mMin[2 * node + 1]);
+            mMax[node] = Math.max(mMax[2 * node], mMax[2 * node + 1]);
+        }
+    }
+
+    void append(float level) {
+        if (mBase + mSize == mCapacity) {
+            makeRoom();
+        }
+        mSize++;
+        set(mSize - 1, level);
+    }
+
+    void removeFirst(int count) {
+        for (int i = 0; i < count; i++) {
+            // empty leaves don't affect any range
+            setLeaf(i, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY);
+        }
+        mBase += count;
+        mSize -= count;
+    }
+
+    /**
+     * Positions past the end are ignored: a source may already hold points it hasn't notified yet,
+     * e.g. a full {@link StreamingSource} announcing evictions before the appended points.
+     * @return the lowest level of positions in [from, to], +infinity if the range is empty
+     */
+    float getMin(int from, int to) {
+        to = Math.min(to, mSize - 1);
+        float min = Float.POSITIVE_INFINITY;
+        for (int l = mCapacity + mBase + from, r = mCapacity + mBase + to + 1; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) != 0) {
+                min = Math.min(min, mMin[l++]);
+            }
+            if ((r & 1) != 0) {
+                min = Math.min(min, mMin[--r]);
+            }
+        }
+        return min;
+    }
+
+    /**
+     * @return the highest level of positions in [from, to], -infinity if the range is empty
+     * @see #getMin(int, int)
+     */
+    float getMax(int from, int to) {
+        to = Math.min(to, mSize - 1);
+        float max = Float.NEGATIVE_INFINITY;
+        for (int l = mCapacity + mBase + from, r = mCapacity + mBase + to + 1; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) != 0) {
+                max = Math.max(max, mMax[l++]);
+            }
+            if ((r & 1) != 0) {
+                max = Math.max(max, mMax[--r]);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Moves the leaves to the start, doubling the capacity if they fill more than half of it.
+     */
+    private void makeRoom() {
+        int capacity = Math.max(MIN_CAPACITY, mSize * 2 > mCapacity ? mCapacity * 2 : mCapacity);
+        float[] leaves = Arrays.copyOfRange(mMin, mCapacity + mBase, mCapacity + mBase + mSize);
+        if (capacity != mCapacity) {
+            mCapacity = capacity;
+            mMin = new float[capacity * 2];
+            mMax = new float[capacity * 2];
+        }
+        Arrays.fill(mMin, Float.POSITIVE_INFINITY);
+        Arrays.fill(mMax, Float.NEGATIVE_INFINITY);
+        System.arraycopy(leaves, 0, mMin, capacity, leaves.length);
+        System.arraycopy(leaves, 0, mMax, capacity, leaves.length);
+        mBase = 0;
+        buildNodes();
+    }
+
+    private void buildNodes() {
+        for (int node = mCapacity - 1; node > 0; node--) {
+            mMin[node] = Math.min(mMin[2 * node], mMin[2 * node + 1]);
+            mMax[node] = Math.max(mMax[2 * node], mMax[2 * node + 1]);
+        }
+    }
+}
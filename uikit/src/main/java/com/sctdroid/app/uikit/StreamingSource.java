@@ -0,0 +1,250 @@
+package com.sctdroid.app.uikit;
+
+import java.util.Arrays;
+
+/**
+ * Fixed capacity {@link DataSource} for live, append-only curves. Once the capacity is reached,
+ * every appended level evicts the oldest one.
+ *
+ * {@link #append(float)} and {@link #appendAll(float[])} can be called from any thread. Appended levels
+ * are buffered and moved into the ring on the main thread once per frame, observers then receive
+ * one {@link DataObserver#onItemRangeRemoved(int, int)} for the evicted levels, if any, and one
+ * {@link DataObserver#onItemRangeInserted(int, int)} for the new ones, in the same frame.
+ */
+
+public class StreamingSource implements DataSource {
+    private final DataObservable mDataSetObservable = new DataObservable();
+
+    /**
+     * ring buffer, only touched on main thread
+     */
+    private final float[] mLevels;
+    private int mHead;
+    private int mCount;
+
+    private float mMinLevel;
+    private float mMaxLevel;
+
+    /**
+     * levels appended but not yet published, guarded by {@link #mPendingLock}
+     */
+    private final Object mPendingLock = new Object();
+    private float[] mPending = new float[16];
+    private int mPendingSize;
+    private boolean mDispatchScheduled;
+    /**
+     * pending buffer swapped out on each frame, so that draining allocates nothing
+     */
+    private float[] mDraining = new float[16];
+
+    /**
+     * created on the first append, guarded by {@link #mPendingLock}
+     */
+    private FrameScheduler mScheduler;
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            drainPending();
+        }
+    };
+
+    public StreamingSource(int capacity) {
+        this(capacity, 0, 100);
+    }
+
+    public StreamingSource(int capacity, float minLevel, float maxLevel) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive, but was " + capacity);
+        }
+        mLevels = new float[capacity];
+        mMinLevel = minLevel;
+        mMaxLevel = maxLevel;
+    }
+
+    public int getCapacity() {
+        return mLevels.length;
+    }
+
+    /**
+     * Appends a level, safe to call from any thread.
+     */
+    public void append(float level) {
+        synchronized (mPendingLock) {
+            ensurePendingCapacity(mPendingSize + 1);
+            mPending[mPendingSize++] = level;
+            scheduleDispatchLocked();
+        }
+    }
+
+    /**
+     * Appends levels in order, safe to call from any thread.
+     */
+    public void appendAll(float[] levels) {
+        appendAll(levels, 0, levels.length);
+    }
+
+    public void appendAll(float[] levels, int offset, int count) {
+        synchronized (mPendingLock) {
+            ensurePendingCapacity(mPendingSize + count);
+            System.arraycopy(levels, offset, mPending, mPendingSize, count);
+            mPendingSize += count;
+            scheduleDispatchLocked();
+        }
+    }
+
+    /**
+     * Appends integer levels in order, safe to call from any thread.
+     */
+    public void appendAll(int[] levels) {
+        appendAll(levels, 0, levels.length);
+    }
+
+    public void appendAll(int[] levels, int offset, int count) {
+        synchronized (mPendingLock) {
+            ensurePendingCapacity(mPendingSize + count);
+            for (int i = 0; i < count; i++) {
+                mPending[mPendingSize + i] = levels[offset + i];
+            }
+            mPendingSize += count;
+            scheduleDispatchLocked();
+        }
+    }
+
+    /**
+     * Drops all levels, including ones not published yet. Must be called on main thread.
+     */
+    public void clear() {
+        synchronized (mPendingLock) {
+            mPendingSize = 0;
+        }
+        mHead = 0;
+        mCount = 0;
+        mDataSetObservable.notifyChanged();
+    }
+
+    /**
+     * Changes the level range. Must be called on main thread.
+     */
+    public void setLevelRange(float minLevel, float maxLevel) {
+        mMinLevel = minLevel;
+        mMaxLevel = maxLevel;
+        mDataSetObservable.notifyChanged();
+    }
+
+    private void ensurePendingCapacity(int capacity) {
+        if (capacity > mPending.length) {
+            mPending = Arrays.copyOf(mPending, Math.max(capacity, mPending.length * 2));
+        }
+    }
+
+    private void scheduleDispatchLocked() {
+        if (!mDispatchScheduled) {
+            mDispatchScheduled = true;
+            if (mScheduler == null) {
+                mScheduler = new FrameScheduler.Main();
+            }
+            mScheduler.schedule(mDrain);
+        }
+    }
+
+    /**
+     * Replaces how appended levels and notifications are scheduled, e.g. by tests on the JVM.
+     * Call before appending.
+     */
+    void setFrameScheduler(FrameScheduler scheduler) {
+        synchronized (mPendingLock) {
+            mScheduler = scheduler;
+        }
+        mDataSetObservable.setFrameScheduler(scheduler);
+    }
+
+    private void drainPending() {
+        float[] batch;
+        int size;
+        synchronized (mPendingLock) {
+            batch = mPending;
+            size = mPendingSize;
+            mPending = mDraining;
+            mPendingSize = 0;
+            mDispatchScheduled = false;
+        }
+        mDraining = batch;
+        if (size == 0) {
+            return;
+        }
+
+        int capacity = mLevels.length;
+        // levels pushed out by later ones in the same batch are never published
+        int start = Math.max(0, size - capacity);
+        int appended = size - start;
+        int evicted = Math.max(0, mCount + appended - capacity);
+        for (int i = start; i < size; i++) {
+            mLevels[(mHead + mCount) % capacity] = batch[i];
+            if (mCount < capacity) {
+                mCount++;
+            } else {
+                mHead = (mHead + 1) % capacity;
+            }
+        }
+
+        if (evicted > 0) {
+            mDataSetObservable.notifyItemRangeRemoved(0, evicted);
+        }
+        mDataSetObservable.notifyItemRangeInserted(mCount - appended, appended);
+        // already in a frame, don't wait for the next one
+        mDataSetObservable.dispatchPending();
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @Override
+    public float getLevel(int position) {
+        return mLevels[(mHead + position) % mLevels.length];
+    }
+
+    @Override
+    public float getMinLevel() {
+        return mMinLevel;
+    }
+
+    @Override
+    public float getMaxLevel() {
+        return mMaxLevel;
+    }
+
+    @Override
+    public String getXAxisText(int position) {
+        return null;
+    }
+
+    @Override
+    public int getMarkCount(int position) {
+        return 0;
+    }
+
+    @Override
+    public CurveView.Mark getMark(int position, int index) {
+        throw new IndexOutOfBoundsException("StreamingSource has no marks");
+    }
+
+    /**
+     * @return observable notifying observers of this source, counting merged notifications
+     */
+    public DataObservable getDataObservable() {
+        return mDataSetObservable;
+    }
+
+    @Override
+    public void registerDataSetObserver(DataObserver observer) {
+        mDataSetObservable.registerObserver(observer);
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataObserver observer) {
+        mDataSetObservable.unregisterObserver(observer);
+    }
+}
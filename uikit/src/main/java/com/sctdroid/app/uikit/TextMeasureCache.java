@@ -0,0 +1,147 @@
+package com.sctdroid.app.uikit;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Widths of texts and font metrics of one paint. Entries are keyed by text and belong to the
+ * paint configuration they were measured with, all of them are dropped once anything of the paint
+ * that changes widths does: text size, typeface, scale, flags, locale, letter spacing or font features.
+ *
+ * Texts and widths are kept in an open addressing table of parallel arrays, so lookups neither
+ * box nor allocate, measuring happens only on a miss. The table is cleared at once when full,
+ * the texts of a curve are few enough that this rarely happens. Only used on the UI thread.
+ */
+
+final class TextMeasureCache {
+    private static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private final Paint mPaint;
+    private final Paint.FontMetrics mFontMetrics = new Paint.FontMetrics();
+
+    /**
+     * texts and their widths by hash, at least twice as many slots as entries to keep probe sequences short
+     */
+    private final String[] mTexts;
+    private final float[] mWidths;
+    private final int mMaxEntries;
+    private int mSize;
+    private int mHitCount;
+    private int mMissCount;
+
+    private float mTextSize;
+    private Typeface mTypeface;
+    private float mTextScaleX;
+    private int mFlags;
+    private Locale mTextLocale;
+    private float mLetterSpacing;
+    private String mFontFeatureSettings;
+
+    private float mAscent;
+    private float mDescent;
+
+    TextMeasureCache(Paint paint) {
+        this(paint, DEFAULT_MAX_ENTRIES);
+    }
+
+    TextMeasureCache(Paint paint, int maxEntries) {
+        mPaint = paint;
+        mMaxEntries = maxEntries;
+        int slots = Integer.highestOneBit(Math.max(1, maxEntries)) << 2;
+        mTexts = new String[slots];
+        mWidths = new float[slots];
+        updateConfig();
+    }
+
+    /**
+     * @return width of text drawn with the paint
+     */
+    float getWidth(String text) {
+        checkConfig();
+        int mask = mTexts.length - 1;
+        int slot = mix(text.hashCode()) & mask;
+        while (mTexts[slot] != null) {
+            if (mTexts[slot].equals(text)) {
+                mHitCount++;
+                return mWidths[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        mMissCount++;
+        float width = mPaint.measureText(text);
+        if (mSize == mMaxEntries) {
+            clear();
+            slot = mix(text.hashCode()) & mask;
+        }
+        mTexts[slot] = text;
+        mWidths[slot] = width;
+        mSize++;
+        return width;
+    }
+
+    float getAscent() {
+        checkConfig();
+        return mAscent;
+    }
+
+    float getDescent() {
+        checkConfig();
+        return mDescent;
+    }
+
+    int hitCount() {
+        return mHitCount;
+    }
+
+    int missCount() {
+        return mMissCount;
+    }
+
+    private void clear() {
+        Arrays.fill(mTexts, null);
+        mSize = 0;
+    }
+
+    private void checkConfig() {
+        if (mPaint.getTextSize() != mTextSize || mPaint.getTypeface() != mTypeface
+                || mPaint.getTextScaleX() != mTextScaleX || mPaint.getFlags() != mFlags
+                || !mPaint.getTextLocale().equals(mTextLocale)
+                || Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                && (mPaint.getLetterSpacing() != mLetterSpacing
+                || !equals(mPaint.getFontFeatureSettings(), mFontFeatureSettings))) {
+            clear();
+            updateConfig();
+        }
+    }
+
+    private void updateConfig() {
+        mTextSize = mPaint.getTextSize();
+        mTypeface = mPaint.getTypeface();
+        mTextScaleX = mPaint.getTextScaleX();
+        mFlags = mPaint.getFlags();
+        mTextLocale = mPaint.getTextLocale();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            mLetterSpacing = mPaint.getLetterSpacing();
+            mFontFeatureSettings = mPaint.getFontFeatureSettings();
+        }
+        mPaint.getFontMetrics(mFontMetrics);
+        mAscent = mFontMetrics.ascent;
+        mDescent = mFontMetrics.descent;
+    }
+
+    /**
+     * spreads hashes of similar texts, which differ in their low bits only a little
+     */
+    private static int mix(int hash) {
+        hash *= 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,162 @@
+package com.sctdroid.app.uikit;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Bitmaps of fixed width slices of the scrolled content, evicted least recently used first once
+ * their total size exceeds the byte budget. Tile k covers content x in [k * TILE_WIDTH, (k + 1) * TILE_WIDTH),
+ * which is a fixed index range of points for a given unit width.
+ *
+ * Evicted and invalidated bitmaps are kept for {@link #obtain(int)}, so drawing a new tile while
+ * scrolling reuses the memory of an old one instead of allocating. Tiles are keyed by int in
+ * arrays kept in use order, a budget holds few tiles so they are searched linearly.
+ */
+
+final class TileCache {
+    static final int TILE_WIDTH = 256;
+    /**
+     * about the tiles of a screen, more are only freed by invalidateAll
+     */
+    private static final int MAX_RECYCLED = 8;
+
+    private final ArrayList<Bitmap> mRecycled = new ArrayList<>(MAX_RECYCLED);
+    /**
+     * tiles and their bitmaps, least recently used first
+     */
+    private int[] mKeys = new int[MAX_RECYCLED];
+    private Bitmap[] mBitmaps = new Bitmap[MAX_RECYCLED];
+    private int mSize;
+    private long mBytes;
+    private int mMaxBytes;
+
+    TileCache(int maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * @return bitmap of the tile, null if not cached
+     */
+    Bitmap get(int tile) {
+        int index = indexOf(tile);
+        if (index < 0) {
+            return null;
+        }
+        Bitmap bitmap = mBitmaps[index];
+        moveToEnd(index);
+        return bitmap;
+    }
+
+    void put(int tile, Bitmap bitmap) {
+        int index = indexOf(tile);
+        if (index >= 0) {
+            Bitmap old = mBitmaps[index];
+            mBytes -= old.getByteCount();
+            mBitmaps[index] = bitmap;
+            moveToEnd(index);
+            if (old != bitmap) {
+                recycle(old);
+            }
+        } else {
+            if (mSize == mKeys.length) {
+                mKeys = Arrays.copyOf(mKeys, mSize * 2);
+                mBitmaps = Arrays.copyOf(mBitmaps, mSize * 2);
+            }
+            mKeys[mSize] = tile;
+            mBitmaps[mSize] = bitmap;
+            mSize++;
+        }
+        mBytes += bitmap.getByteCount();
+        trimToSize(mMaxBytes);
+    }
+
+    /**
+     * @return a cleared bitmap for a tile, reused from a dropped tile of the same height if there is one
+     */
+    Bitmap obtain(int height) {
+        for (int i = mRecycled.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = mRecycled.remove(i);
+            if (bitmap.getHeight() == height) {
+                bitmap.eraseColor(0);
+                return bitmap;
+            }
+        }
+        return Bitmap.createBitmap(TILE_WIDTH, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Drops tiles in [fromTile, toTile].
+     */
+    void invalidate(int fromTile, int toTile) {
+        int kept = 0;
+        for (int i = 0; i < mSize; i++) {
+            int tile = mKeys[i];
+            Bitmap bitmap = mBitmaps[i];
+            if (tile >= fromTile && tile <= toTile) {
+                mBytes -= bitmap.getByteCount();
+                recycle(bitmap);
+            } else {
+                mKeys[kept] = tile;
+                mBitmaps[kept] = bitmap;
+                kept++;
+            }
+        }
+        Arrays.fill(mBitmaps, kept, mSize, null);
+        mSize = kept;
+    }
+
+    void invalidateAll() {
+        trimToSize(-1);
+    }
+
+    void setMaxBytes(int maxBytes) {
+        mMaxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * Drops least recently used tiles until the rest fit in maxBytes.
+     */
+    private void trimToSize(long maxBytes) {
+        int evicted = 0;
+        while (evicted < mSize && mBytes > maxBytes) {
+            Bitmap bitmap = mBitmaps[evicted];
+            mBytes -= bitmap.getByteCount();
+            recycle(bitmap);
+            evicted++;
+        }
+        if (evicted == 0) {
+            return;
+        }
+        System.arraycopy(mKeys, evicted, mKeys, 0, mSize - evicted);
+        System.arraycopy(mBitmaps, evicted, mBitmaps, 0, mSize - evicted);
+        Arrays.fill(mBitmaps, mSize - evicted, mSize, null);
+        mSize -= evicted;
+    }
+
+    private void recycle(Bitmap bitmap) {
+        if (mRecycled.size() < MAX_RECYCLED) {
+            mRecycled.add(bitmap);
+        }
+    }
+
+    private void moveToEnd(int index) {
+        int tile = mKeys[index];
+        Bitmap bitmap = mBitmaps[index];
+        System.arraycopy(mKeys, index + 1, mKeys, index, mSize - index - 1);
+        System.arraycopy(mBitmaps, index + 1, mBitmaps, index, mSize - index - 1);
+        mKeys[mSize - 1] = tile;
+        mBitmaps[mSize - 1] = bitmap;
+    }
+
+    private int indexOf(int tile) {
+        for (int i = mSize - 1; i >= 0; i--) {
+            if (mKeys[i] == tile) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,82 @@
+package com.sctdroid.app.uikit;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Growable levels without texts, marks or observers, a {@link DataSource} for unit tests that,
+ * unlike {@link LevelColumns}, throws when reading past its count instead of returning stale levels.
+ */
+
+final class ArrayLevels implements DataSource {
+    private float[] mLevels = new float[16];
+    private int mCount;
+
+    /**
+     * @return count levels drawn uniformly from [0, 100)
+     */
+    static ArrayLevels random(Random random, int count) {
+        ArrayLevels levels = new ArrayLevels();
+        for (int i = 0; i < count; i++) {
+            levels.add(random.nextFloat() * 100);
+        }
+        return levels;
+    }
+
+    void add(float level) {
+        if (mCount == mLevels.length) {
+            mLevels = Arrays.copyOf(mLevels, mCount * 2);
+        }
+        mLevels[mCount++] = level;
+    }
+
+    void set(int position, float level) {
+        mLevels[position] = level;
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @Override
+    public float getLevel(int position) {
+        if (position >= mCount) {
+            throw new IndexOutOfBoundsException("position " + position + ", count " + mCount);
+        }
+        return mLevels[position];
+    }
+
+    @Override
+    public float getMinLevel() {
+        return 0;
+    }
+
+    @Override
+    public float getMaxLevel() {
+        return 100;
+    }
+
+    @Override
+    public String getXAxisText(int position) {
+        return null;
+    }
+
+    @Override
+    public int getMarkCount(int position) {
+        return 0;
+    }
+
+    @Override
+    public CurveView.Mark getMark(int position, int index) {
+        throw new IndexOutOfBoundsException();
+    }
+
+    @Override
+    public void registerDataSetObserver(DataObserver observer) {
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataObserver observer) {
+    }
+}
@@ -0,0 +1,87 @@
+package com.sctdroid.app.uikit;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link AxisTicks} steps and labels.
+ */
+public class AxisTicksTest {
+
+    @Test
+    public void niceStep_roundsUpToOneTwoTwoAndAHalfOrFive() throws Exception {
+        assertEquals(1, AxisTicks.niceStep(1), 0);
+        assertEquals(2, AxisTicks.niceStep(1.2), 0);
+        assertEquals(2.5, AxisTicks.niceStep(2.1), 0);
+        assertEquals(5, AxisTicks.niceStep(3), 0);
+        assertEquals(10, AxisTicks.niceStep(7), 0);
+        assertEquals(200, AxisTicks.niceStep(101), 1e-9);
+        assertEquals(0.025, AxisTicks.niceStep(0.021), 1e-12);
+    }
+
+    @Test
+    public void update_labelsRoundValues() throws Exception {
+        AxisTicks ticks = new AxisTicks();
+        assertTrue(ticks.update(0, 100, 6));
+        assertEquals(6, ticks.getCount());
+        String[] labels = {"0", "20", "40", "60", "80", "100"};
+        for (int i = 0; i < labels.length; i++) {
+            assertEquals(labels[i], ticks.getLabel(i));
+        }
+    }
+
+    @Test
+    public void update_decimalsForFractionalSteps() throws Exception {
+        AxisTicks ticks = new AxisTicks();
+        // steps of 0.25 need one decimal more than their power of ten
+        ticks.update(-1, 1, 9);
+        assertEquals(9, ticks.getCount());
+        assertEquals("-1.00", ticks.getLabel(0));
+        assertEquals("-0.75", ticks.getLabel(1));
+        assertEquals("0.00", ticks.getLabel(4));
+        assertEquals("1.00", ticks.getLabel(8));
+    }
+
+    @Test
+    public void update_atMostMaxTicksWithinRange() throws Exception {
+        Random random = new Random(1);
+        AxisTicks ticks = new AxisTicks();
+        for (int n = 0; n < 10000; n++) {
+            float min = (random.nextFloat() - 0.5f) * (float) Math.pow(10, random.nextInt(9) - 3);
+            float max = min + random.nextFloat() * (float) Math.pow(10, random.nextInt(9) - 3) + 1e-3f;
+            int maxTicks = 2 + random.nextInt(10);
+            if (!(max > min)) {
+                // the width got lost in rounding
+                continue;
+            }
+            ticks.update(min, max, maxTicks);
+            String where = "[" + min + ", " + max + "], " + maxTicks + " ticks";
+            // a nice step is less than twice the plain one, so from 3 ticks on one always fits
+            assertTrue(where, ticks.getCount() >= (maxTicks > 2 ? 1 : 0) && ticks.getCount() <= maxTicks);
+            double step = AxisTicks.niceStep((max - min) / (maxTicks - 1));
+            for (int i = 0; i < ticks.getCount(); i++) {
+                float value = ticks.getValue(i);
+                assertTrue(where, value >= min - step * 1e-6 && value <= max + step * 1e-6);
+                // a multiple of the step, as close as a float gets to it
+                assertEquals(where, (float) (Math.rint(value / step) * step), value, 0f);
+            }
+        }
+    }
+
+    @Test
+    public void update_reportsChangesOnly() throws Exception {
+        AxisTicks ticks = new AxisTicks();
+        assertTrue(ticks.update(0, 90, 6));
+        // moved, but the same ticks
+        assertFalse(ticks.update(-1, 89, 6));
+        assertTrue(ticks.update(0, 50, 6));
+        assertTrue(ticks.update(5, 5, 6));
+        assertEquals(0, ticks.getCount());
+        assertFalse(ticks.update(5, 5, 6));
+    }
+}
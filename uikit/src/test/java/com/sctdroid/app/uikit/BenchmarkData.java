@@ -0,0 +1,31 @@
+package com.sctdroid.app.uikit;
+
+import java.util.Random;
+
+/**
+ * Levels shared by the benchmarks: a random walk, so that ranges and buckets vary like sensor data.
+ */
+
+final class BenchmarkData {
+    private static final long SEED = 42;
+
+    private BenchmarkData() {
+    }
+
+    static float[] randomWalk(int count) {
+        Random random = new Random(SEED);
+        float[] levels = new float[count];
+        float level = 50;
+        for (int i = 0; i < count; i++) {
+            level = Math.max(0, Math.min(100, level + (random.nextFloat() - 0.5f) * 4));
+            levels[i] = level;
+        }
+        return levels;
+    }
+
+    static LevelColumns columns(float[] levels) {
+        LevelColumns columns = new LevelColumns(levels.length);
+        columns.addAll(levels, 0, levels.length);
+        return columns;
+    }
+}
@@ -0,0 +1,69 @@
+package com.sctdroid.app.uikit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Path window of {@link CurveView} moved along as a {@link StreamingSource} evicts from the front,
+ * as recorded into the content picture, and the scroll positions of flings and smooth scrolls.
+ */
+public class CurveGeometryTest {
+
+    @Test
+    public void windowInPoints_afterEvictionFromTheFront() throws Exception {
+        StreamingSource source = new StreamingSource(8);
+        ManualFrameScheduler scheduler = new ManualFrameScheduler();
+        source.setFrameScheduler(scheduler);
+        source.appendAll(new float[] {0, 1, 2, 3, 4, 5, 6, 7});
+        scheduler.runFrame();
+
+        // the picture covers points [0, 5], two are evicted and the path moves along
+        int pathStart = 0 - 2;
+        int pathEnd = 5 - 2;
+        source.appendAll(new float[] {8, 9});
+        scheduler.runFrame();
+
+        int first = CurveGeometry.getFirstInWindow(pathStart);
+        int last = CurveGeometry.getLastInWindow(pathEnd, source.getCount());
+        assertEquals(0, first);
+        assertEquals(3, last);
+        for (int i = first; i <= last; i++) {
+            assertEquals(i + 2, source.getLevel(i), 0);
+        }
+    }
+
+    @Test
+    public void windowInPoints_pastTheLastPoint() throws Exception {
+        assertEquals(4, CurveGeometry.getLastInWindow(9, 5));
+        // nothing left, the range is empty
+        assertEquals(0, CurveGeometry.getFirstInWindow(-3));
+        assertEquals(-1, CurveGeometry.getLastInWindow(2, 0));
+    }
+
+    @Test
+    public void getScrollXToCenter_clampedToTheScrollRange() throws Exception {
+        // 100 points 10px apart after 20px of padding, in a 300px wide view
+        int maxScrollX = 20 + 990 + 20 - 300;
+        assertEquals(20 + 500 - 150, CurveGeometry.getScrollXToCenter(50, 100, 10, 20, 300, maxScrollX));
+        assertEquals(0, CurveGeometry.getScrollXToCenter(3, 100, 10, 20, 300, maxScrollX));
+        assertEquals(maxScrollX, CurveGeometry.getScrollXToCenter(98, 100, 10, 20, 300, maxScrollX));
+        // indices beyond the points
+        assertEquals(0, CurveGeometry.getScrollXToCenter(-7, 100, 10, 20, 300, maxScrollX));
+        assertEquals(maxScrollX, CurveGeometry.getScrollXToCenter(500, 100, 10, 20, 300, maxScrollX));
+    }
+
+    @Test
+    public void getEdgeCrossed_onlyInTheStepPassingTheEdge() throws Exception {
+        int range = 700;
+        assertEquals(CurveGeometry.EDGE_NONE, CurveGeometry.getEdgeCrossed(300, 250, range));
+        assertEquals(CurveGeometry.EDGE_START, CurveGeometry.getEdgeCrossed(12, -5, range));
+        assertEquals(CurveGeometry.EDGE_START, CurveGeometry.getEdgeCrossed(0, -1, range));
+        // overflinging and springing back don't absorb again
+        assertEquals(CurveGeometry.EDGE_NONE, CurveGeometry.getEdgeCrossed(-5, -20, range));
+        assertEquals(CurveGeometry.EDGE_NONE, CurveGeometry.getEdgeCrossed(-20, -3, range));
+        assertEquals(CurveGeometry.EDGE_END, CurveGeometry.getEdgeCrossed(690, 710, range));
+        assertEquals(CurveGeometry.EDGE_NONE, CurveGeometry.getEdgeCrossed(710, 730, range));
+        assertEquals(CurveGeometry.EDGE_NONE, CurveGeometry.getEdgeCrossed(730, 700, range));
+    }
+}
@@ -0,0 +1,134 @@
+package com.sctdroid.app.uikit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Notifications of a {@link DataObservable} queued within a frame and what observers receive.
+ */
+public class DataObservableTest {
+    private DataObservable mObservable;
+    private ManualFrameScheduler mScheduler;
+    private RecordingObserver mObserver;
+
+    @Before
+    public void setUp() throws Exception {
+        mObservable = new DataObservable();
+        mScheduler = new ManualFrameScheduler();
+        mObservable.setFrameScheduler(mScheduler);
+        mObserver = new RecordingObserver();
+        mObservable.registerObserver(mObserver);
+    }
+
+    @Test
+    public void notify_deliveredInTheNextFrame() throws Exception {
+        mObservable.notifyItemRangeChanged(3, 2);
+        assertTrue(mObservable.hasPending());
+        assertEquals(Collections.emptyList(), mObserver.mCalls);
+
+        mScheduler.runFrame();
+        assertFalse(mObservable.hasPending());
+        assertEquals(Arrays.asList("changed 3 2"), mObserver.mCalls);
+    }
+
+    @Test
+    public void slidingWindow_ticksMergeIntoOnePair() throws Exception {
+        // a full window of 100 points, each tick evicts the oldest and appends one
+        for (int i = 0; i < 5; i++) {
+            mObservable.notifyItemRangeRemoved(0, 1);
+            mObservable.notifyItemRangeInserted(99, 1);
+        }
+        mScheduler.runFrame();
+        assertEquals(Arrays.asList("removed 0 5", "inserted 95 5"), mObserver.mCalls);
+        assertEquals(10, mObservable.getNotificationCount());
+        assertEquals(2, mObservable.getDispatchCount());
+        assertEquals(8, mObservable.getMergedCount());
+    }
+
+    @Test
+    public void slidingWindow_batchesOfSeveralPoints() throws Exception {
+        mObservable.notifyItemRangeRemoved(0, 3);
+        mObservable.notifyItemRangeInserted(47, 3);
+        mObservable.notifyItemRangeRemoved(0, 2);
+        mObservable.notifyItemRangeInserted(48, 2);
+        mScheduler.runFrame();
+        assertEquals(Arrays.asList("removed 0 5", "inserted 45 5"), mObserver.mCalls);
+    }
+
+    @Test
+    public void slidingWindow_removingInsertedPointsChangesAll() throws Exception {
+        // a window of 3: the second removal reaches the point inserted by the first tick
+        mObservable.notifyItemRangeRemoved(0, 1);
+        mObservable.notifyItemRangeInserted(2, 1);
+        mObservable.notifyItemRangeRemoved(0, 3);
+        mScheduler.runFrame();
+        assertEquals(Arrays.asList("changed"), mObserver.mCalls);
+    }
+
+    @Test
+    public void ranges_adjacentMergeOthersChangeAll() throws Exception {
+        mObservable.notifyItemRangeChanged(10, 5);
+        mObservable.notifyItemRangeChanged(15, 5);
+        mObservable.notifyItemRangeChanged(8, 3);
+        mScheduler.runFrame();
+        assertEquals(Arrays.asList("changed 8 12"), mObserver.mCalls);
+
+        mObserver.mCalls.clear();
+        mObservable.notifyItemRangeInserted(10, 2);
+        mObservable.notifyItemRangeInserted(12, 2);
+        mObservable.notifyItemRangeInserted(10, 1);
+        mScheduler.runFrame();
+        assertEquals(Arrays.asList("inserted 10 5"), mObserver.mCalls);
+
+        mObserver.mCalls.clear();
+        mObservable.notifyItemRangeChanged(0, 1);
+        mObservable.notifyItemRangeChanged(50, 1);
+        mScheduler.runFrame();
+        assertEquals(Arrays.asList("changed"), mObserver.mCalls);
+    }
+
+    @Test
+    public void dispatchPending_deliversRightAway() throws Exception {
+        mObservable.notifyItemRangeInserted(0, 1);
+        mObservable.dispatchPending();
+        assertEquals(Arrays.asList("inserted 0 1"), mObserver.mCalls);
+        assertFalse(mScheduler.hasScheduled());
+        mScheduler.runFrame();
+        assertEquals(1, mObserver.mCalls.size());
+    }
+
+    @Test
+    public void registration() throws Exception {
+        RecordingObserver other = new RecordingObserver();
+        mObservable.registerObserver(other);
+        try {
+            mObservable.registerObserver(other);
+            fail("registered twice");
+        } catch (IllegalStateException expected) {
+        }
+        mObservable.notifyChanged();
+        mObservable.unregisterObserver(mObserver);
+        // observers registered at dispatch are called
+        mScheduler.runFrame();
+        assertEquals(Collections.emptyList(), mObserver.mCalls);
+        assertEquals(Arrays.asList("changed"), other.mCalls);
+
+        try {
+            mObservable.unregisterObserver(mObserver);
+            fail("unregistered twice");
+        } catch (IllegalStateException expected) {
+        }
+        mObservable.unregisterAll();
+        mObservable.notifyChanged();
+        mScheduler.runFrame();
+        assertEquals(1, other.mCalls.size());
+    }
+}
@@ -0,0 +1,115 @@
+package com.sctdroid.app.uikit;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DecorationCache} against a map of what was put, under random use.
+ */
+public class DecorationCacheTest {
+
+    @Test
+    public void get_returnsWhatWasPutUntilEvicted() throws Exception {
+        Random random = new Random(1);
+        DecorationCache cache = new DecorationCache(16);
+        Map<Integer, DecorationCache.Entry> expected = new HashMap<>();
+        for (int n = 0; n < 100000; n++) {
+            int position = random.nextInt(40);
+            int operation = random.nextInt(10);
+            if (operation < 7) {
+                DecorationCache.Entry entry = cache.get(position);
+                if (entry == null) {
+                    entry = cache.put(position);
+                    assertNull(entry.text);
+                    assertNull(entry.marks);
+                    entry.text = "#" + position;
+                    entry.textLoaded = true;
+                    expected.put(position, entry);
+                } else {
+                    assertSame(expected.get(position), entry);
+                    assertEquals("#" + position, entry.text);
+                }
+            } else if (operation < 9) {
+                int count = 1 + random.nextInt(5);
+                cache.remove(position, count);
+                for (int i = position; i < position + count; i++) {
+                    expected.remove(i);
+                }
+            } else if (random.nextInt(100) == 0) {
+                cache.clear();
+                expected.clear();
+            }
+            assertCached(cache, expected);
+        }
+    }
+
+    @Test
+    public void put_evictsEntriesNotUsedSinceTheHandPassed() throws Exception {
+        DecorationCache cache = new DecorationCache(4);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i);
+        }
+        // all were used, the hand clears them once round and evicts the first
+        cache.put(4);
+        assertNull(cache.get(0));
+        // 1, 2 and 3 are unused since, 4 was just put
+        cache.get(1);
+        cache.get(2);
+        cache.put(5);
+        assertNull(cache.get(3));
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(2));
+        assertNotNull(cache.get(4));
+    }
+
+    @Test
+    public void setMaxEntries_keepsEntriesWhenGrowing() throws Exception {
+        DecorationCache cache = new DecorationCache(4);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i).text = "#" + i;
+        }
+        cache.setMaxEntries(8);
+        for (int i = 4; i < 8; i++) {
+            cache.put(i);
+        }
+        for (int i = 0; i < 8; i++) {
+            assertNotNull(cache.get(i));
+        }
+        assertEquals("#3", cache.get(3).text);
+
+        cache.setMaxEntries(3);
+        int cached = 0;
+        for (int i = 0; i < 8; i++) {
+            cached += cache.get(i) != null ? 1 : 0;
+        }
+        assertEquals(3, cached);
+    }
+
+    /**
+     * Entries still cached must be the ones put, and at most the maximum may be cached.
+     */
+    private static void assertCached(DecorationCache cache, Map<Integer, DecorationCache.Entry> expected) {
+        int cached = 0;
+        for (Map.Entry<Integer, DecorationCache.Entry> entry : new HashMap<>(expected).entrySet()) {
+            DecorationCache.Entry actual = cache.get(entry.getKey());
+            if (actual == null) {
+                // evicted
+                expected.remove(entry.getKey());
+            } else {
+                assertSame(entry.getValue(), actual);
+                assertEquals(entry.getKey().intValue(), actual.position);
+                cached++;
+            }
+        }
+        assertTrue(cached <= cache.getMaxEntries());
+    }
+}
@@ -0,0 +1,89 @@
+package com.sctdroid.app.uikit;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link Downsampler} keeps the first, lowest, highest and last point of every pixel column.
+ */
+public class DownsamplerTest {
+
+    @Test
+    public void reduce_keepsM4OfEveryColumn() throws Exception {
+        Random random = new Random(1);
+        for (float unitWidth : new float[] {0.5f, 0.1f, 0.013f, 0.001f}) {
+            ArrayLevels levels = ArrayLevels.random(random, 10000);
+            Downsampler downsampler = new Downsampler();
+            int size = downsampler.reduce(levels, levels.getCount(), unitWidth);
+            assertM4(levels, unitWidth, downsampler.getIndices(), size);
+        }
+    }
+
+    @Test
+    public void reduce_keepsEveryPointOfWideColumns() throws Exception {
+        ArrayLevels levels = ArrayLevels.random(new Random(2), 100);
+        Downsampler downsampler = new Downsampler();
+        int size = downsampler.reduce(levels, levels.getCount(), 1);
+        assertEquals(100, size);
+        for (int i = 0; i < size; i++) {
+            assertEquals(i, downsampler.getIndices()[i]);
+        }
+    }
+
+    @Test
+    public void invalidate_reducesChangedLevels() throws Exception {
+        ArrayLevels levels = ArrayLevels.random(new Random(3), 1000);
+        Downsampler downsampler = new Downsampler();
+        downsampler.reduce(levels, levels.getCount(), 0.1f);
+        levels.set(555, 1000);
+        downsampler.invalidate();
+        int size = downsampler.reduce(levels, levels.getCount(), 0.1f);
+        assertM4(levels, 0.1f, downsampler.getIndices(), size);
+    }
+
+    @Test
+    public void reduce_emptySource() throws Exception {
+        assertEquals(0, new Downsampler().reduce(new ArrayLevels(), 0, 0.1f));
+    }
+
+    /**
+     * Checks the kept indices column by column against a scan of the levels.
+     */
+    private static void assertM4(ArrayLevels levels, float unitWidth, int[] indices, int size) {
+        for (int i = 1; i < size; i++) {
+            assertTrue("indices ascend", indices[i - 1] < indices[i]);
+        }
+        int k = 0;
+        int first = 0;
+        while (first < levels.getCount()) {
+            int column = (int) (first * unitWidth);
+            int last = first;
+            float min = levels.getLevel(first);
+            float max = min;
+            while (last + 1 < levels.getCount() && (int) ((last + 1) * unitWidth) == column) {
+                last++;
+                min = Math.min(min, levels.getLevel(last));
+                max = Math.max(max, levels.getLevel(last));
+            }
+            int from = k;
+            boolean hasMin = false;
+            boolean hasMax = false;
+            while (k < size && indices[k] <= last) {
+                hasMin |= levels.getLevel(indices[k]) == min;
+                hasMax |= levels.getLevel(indices[k]) == max;
+                k++;
+            }
+            String where = "column " + column;
+            assertTrue(where, k - from >= 1 && k - from <= 4);
+            assertEquals(where, first, indices[from]);
+            assertEquals(where, last, indices[k - 1]);
+            assertTrue(where, hasMin && hasMax);
+            first = last + 1;
+        }
+        assertEquals(size, k);
+    }
+}
@@ -0,0 +1,79 @@
+package com.sctdroid.app.uikit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reducing a series to what a 1080px wide view can show: M4 downsampling of all points
+ * in showAll mode, and the level of detail pyramid used when zoomed out, built from scratch
+ * and extended by an appended point.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DownsamplingBenchmark {
+    private static final int WIDTH = 1080;
+
+    /**
+     * more points than pixels, fewer would draw every point and leave nothing to reduce
+     */
+    @Param({"10000", "100000", "1000000"})
+    public int count;
+
+    private LevelColumns mColumns;
+    private Downsampler mDownsampler;
+    private LodPyramid mPyramid;
+    private float mUnitWidth;
+    private int mLevel;
+
+    @Setup
+    public void setUp() {
+        mColumns = BenchmarkData.columns(BenchmarkData.randomWalk(count));
+        mDownsampler = new Downsampler();
+        mPyramid = new LodPyramid();
+        mUnitWidth = WIDTH * 1f / (count - 1);
+        mLevel = LodPyramid.levelFor(mUnitWidth);
+        if (mLevel == 0) {
+            throw new IllegalStateException(count + " points fit in " + WIDTH + "px, the pyramid would not be built");
+        }
+        mPyramid.update(mColumns, count, mLevel);
+    }
+
+    @Benchmark
+    public int downsample() {
+        mDownsampler.invalidate();
+        return mDownsampler.reduce(mColumns, count, mUnitWidth);
+    }
+
+    @Benchmark
+    public LodPyramid buildPyramid() {
+        mPyramid.invalidate();
+        mPyramid.update(mColumns, count, mLevel);
+        return mPyramid;
+    }
+
+    /**
+     * Brings the pyramid up to date after the last point changed, as after an append.
+     */
+    @Benchmark
+    public LodPyramid updatePyramid() {
+        mPyramid.invalidateFrom(count - 1);
+        mPyramid.update(mColumns, count, mLevel);
+        return mPyramid;
+    }
+}
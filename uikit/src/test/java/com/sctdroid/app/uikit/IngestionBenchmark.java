@@ -0,0 +1,68 @@
+package com.sctdroid.app.uikit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of copying levels into {@link LevelColumns}, point by point as {@link CurveView}
+ * reads an adapter and in bulk, and of reading them back.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IngestionBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int count;
+
+    private float[] mLevels;
+    private LevelColumns mColumns;
+
+    @Setup
+    public void setUp() {
+        mLevels = BenchmarkData.randomWalk(count);
+        mColumns = BenchmarkData.columns(mLevels);
+    }
+
+    @Benchmark
+    public LevelColumns addEach() {
+        LevelColumns columns = new LevelColumns();
+        for (int i = 0; i < count; i++) {
+            columns.add(mLevels[i]);
+        }
+        return columns;
+    }
+
+    @Benchmark
+    public LevelColumns addAll() {
+        LevelColumns columns = new LevelColumns(count);
+        columns.addAll(mLevels, 0, count);
+        return columns;
+    }
+
+    /**
+     * Reading all levels back, the lower bound of any pass over the data.
+     */
+    @Benchmark
+    public float readAll() {
+        float sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += mColumns.getLevel(i);
+        }
+        return sum;
+    }
+}
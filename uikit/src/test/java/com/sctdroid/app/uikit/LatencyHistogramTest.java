@@ -0,0 +1,108 @@
+package com.sctdroid.app.uikit;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link LatencyHistogram} percentiles against the exact ones, and {@link CurveMetrics} feeding it.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void getPercentile_exactForSmallValues() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int value = 0; value < 8; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5);
+        assertEquals(9, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0));
+        assertEquals(0, histogram.getPercentile(20));
+        assertEquals(3, histogram.getPercentile(50));
+        assertEquals(7, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void getPercentile_withinABucketOfTheExactValue() throws Exception {
+        Random random = new Random(1);
+        long[] values = new long[10000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < values.length; i++) {
+            // frame times from about a microsecond to a second
+            values[i] = (long) Math.pow(10, 3 + random.nextDouble() * 6);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percentile : new double[] {1, 50, 90, 99, 99.9, 100}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = histogram.getPercentile(percentile);
+            String where = "p" + percentile + ": exact " + exact + ", reported " + reported;
+            // the upper bound of the bucket holding the value, buckets are 1/8 of a power of two wide
+            assertTrue(where, reported >= exact && reported <= exact + exact / 8 + 1);
+        }
+    }
+
+    @Test
+    public void getPercentile_largestValues() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void record_fromSeveralThreads() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.record(i);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, histogram.getCount());
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void metrics_recordFramesAndDataChanges() throws Exception {
+        CurveMetrics metrics = new CurveMetrics();
+        metrics.beginFrame();
+        metrics.mVisiblePoints = 100;
+        metrics.mPathRebuilds = 1;
+        metrics.endFrame(16000000);
+        metrics.endDataChange(2000, 3);
+        assertEquals(16000000, metrics.getFrameNanos());
+        assertEquals(100, metrics.getVisiblePoints());
+        assertEquals(2000, metrics.getDataChangeNanos());
+        assertEquals(3, metrics.getAdapterCalls());
+        assertEquals(1, metrics.getFrameTimes().getCount());
+        assertEquals(1, metrics.getDataChangeTimes().getCount());
+
+        // counters are per frame, histograms span frames
+        metrics.beginFrame();
+        assertEquals(0, metrics.getVisiblePoints());
+        assertEquals(0, metrics.getPathRebuilds());
+        metrics.endFrame(8000000);
+        assertEquals(2, metrics.getFrameTimes().getCount());
+
+        metrics.reset();
+        assertEquals(0, metrics.getFrameNanos());
+        assertEquals(0, metrics.getFrameTimes().getCount());
+        assertEquals(0, metrics.getDataChangeTimes().getCount());
+    }
+}
@@ -0,0 +1,154 @@
+package com.sctdroid.app.uikit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Levels, texts and sparse marks of {@link LevelColumns} kept in step through inserts and removes.
+ */
+public class LevelColumnsTest {
+
+    @Test
+    public void add_growsPastTheInitialCapacity() throws Exception {
+        LevelColumns columns = new LevelColumns(2);
+        for (int i = 0; i < 10; i++) {
+            columns.add(i);
+        }
+        columns.addAll(new float[] {-1, 10, 11, 12, -1}, 1, 3);
+        assertEquals(13, columns.getCount());
+        for (int i = 0; i < 13; i++) {
+            assertEquals(i, columns.getLevel(i), 0);
+        }
+        columns.set(5, 50);
+        assertEquals(50, columns.getLevel(5), 0);
+    }
+
+    @Test
+    public void insert_shiftsLevelsTextsAndMarks() throws Exception {
+        LevelColumns columns = columns(6);
+        CurveView.Mark[] marks = {new CurveView.Mark("a")};
+        columns.setMarks(1, marks);
+        columns.setMarks(4, marks);
+        columns.setXAxisText(4, "4");
+
+        columns.insert(2, 3);
+        assertEquals(9, columns.getCount());
+        float[] expected = {0, 1, 0, 0, 0, 2, 3, 4, 5};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("level " + i, expected[i], columns.getLevel(i), 0);
+        }
+        assertEquals(1, columns.getMarkCount(1));
+        assertEquals(0, columns.getMarkCount(4));
+        assertSame(marks[0], columns.getMark(7, 0));
+        assertNull(columns.getXAxisText(4));
+        assertEquals("4", columns.getXAxisText(7));
+    }
+
+    @Test
+    public void remove_dropsTextsAndMarksOfRemovedPoints() throws Exception {
+        LevelColumns columns = columns(8);
+        CurveView.Mark[] marks = {new CurveView.Mark("a"), new CurveView.Mark("b")};
+        columns.setMarks(2, marks);
+        columns.setMarks(3, marks);
+        columns.setMarks(6, marks);
+        columns.setXAxisText(3, "3");
+        columns.setXAxisText(7, "7");
+
+        columns.remove(2, 3);
+        assertEquals(5, columns.getCount());
+        float[] expected = {0, 1, 5, 6, 7};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("level " + i, expected[i], columns.getLevel(i), 0);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals("marks of " + i, i == 3 ? 2 : 0, columns.getMarkCount(i));
+        }
+        assertNull(columns.getXAxisText(2));
+        assertEquals("7", columns.getXAxisText(4));
+    }
+
+    @Test
+    public void setMarks_emptyRemovesTheEntry() throws Exception {
+        LevelColumns columns = columns(40);
+        CurveView.Mark[] marks = {new CurveView.Mark("a")};
+        // past the initial capacity of the table, in descending order
+        for (int i = 39; i >= 0; i -= 2) {
+            columns.setMarks(i, marks);
+        }
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i % 2, columns.getMarkCount(i));
+        }
+        columns.setMarks(9, null);
+        columns.setMarks(11, new CurveView.Mark[0]);
+        columns.setMarks(10, null);
+        assertEquals(0, columns.getMarkCount(9));
+        assertEquals(0, columns.getMarkCount(11));
+        assertEquals(1, columns.getMarkCount(13));
+    }
+
+    @Test
+    public void loadXAxisText_calledOncePerPointUntilCleared() throws Exception {
+        final int[] loads = new int[1];
+        LevelColumns columns = new LevelColumns() {
+            @Override
+            protected String loadXAxisText(int position) {
+                loads[0]++;
+                return "#" + position;
+            }
+        };
+        for (int i = 0; i < 5; i++) {
+            columns.add(i);
+        }
+        assertEquals("#3", columns.getXAxisText(3));
+        assertEquals("#3", columns.getXAxisText(3));
+        assertEquals(1, loads[0]);
+
+        columns.clearXAxisTexts(2, 2);
+        assertEquals("#3", columns.getXAxisText(3));
+        assertEquals(2, loads[0]);
+    }
+
+    @Test
+    public void copyLevels_unaffectedByLaterChanges() throws Exception {
+        LevelColumns columns = columns(5);
+        columns.setLevelRange(-1, 9);
+        LevelColumns copy = columns.copyLevels();
+        columns.set(2, 20);
+        columns.remove(0, 1);
+        assertEquals(5, copy.getCount());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, copy.getLevel(i), 0);
+        }
+        assertEquals(-1, copy.getMinLevel(), 0);
+        assertEquals(9, copy.getMaxLevel(), 0);
+        assertEquals(0, columns(0).copyLevels().getCount());
+    }
+
+    @Test
+    public void clear_dropsEverything() throws Exception {
+        LevelColumns columns = columns(5);
+        columns.setMarks(1, new CurveView.Mark[] {new CurveView.Mark("a")});
+        columns.setXAxisText(1, "1");
+        columns.clear();
+        assertEquals(0, columns.getCount());
+
+        columns.add(7);
+        columns.add(8);
+        assertEquals(0, columns.getMarkCount(1));
+        assertNull(columns.getXAxisText(1));
+    }
+
+    /**
+     * @return columns whose point i has level i
+     */
+    private static LevelColumns columns(int count) {
+        LevelColumns columns = new LevelColumns();
+        for (int i = 0; i < count; i++) {
+            columns.add(i);
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,82 @@
+package com.sctdroid.app.uikit;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link LodPyramid} buckets against a scan of the same levels.
+ */
+public class LodPyramidTest {
+
+    @Test
+    public void levelFor_bucketsAtLeastAPixelWide() throws Exception {
+        assertEquals(0, LodPyramid.levelFor(10));
+        assertEquals(0, LodPyramid.levelFor(1));
+        assertEquals(1, LodPyramid.levelFor(0.5f));
+        assertEquals(2, LodPyramid.levelFor(0.3f));
+        assertEquals(10, LodPyramid.levelFor(1f / 1024));
+    }
+
+    @Test
+    public void update_buildsEveryLevel() throws Exception {
+        // not a power of two, the last bucket of each level is partial
+        ArrayLevels levels = ArrayLevels.random(new Random(1), 1000);
+        LodPyramid pyramid = new LodPyramid();
+        pyramid.update(levels, levels.getCount(), 10);
+        assertPyramid(levels, pyramid, 10);
+    }
+
+    @Test
+    public void update_extendsLevelsAfterAppend() throws Exception {
+        Random random = new Random(2);
+        ArrayLevels levels = ArrayLevels.random(random, 100);
+        LodPyramid pyramid = new LodPyramid();
+        pyramid.update(levels, levels.getCount(), 6);
+        for (int i = 0; i < 300; i++) {
+            levels.add(random.nextFloat() * 100);
+            pyramid.invalidateFrom(levels.getCount() - 1);
+            pyramid.update(levels, levels.getCount(), 6);
+            assertPyramid(levels, pyramid, 6);
+        }
+    }
+
+    @Test
+    public void update_rebuildsFromChangedPoint() throws Exception {
+        ArrayLevels levels = ArrayLevels.random(new Random(3), 777);
+        LodPyramid pyramid = new LodPyramid();
+        pyramid.update(levels, levels.getCount(), 5);
+        levels.set(300, -1);
+        levels.set(301, 101);
+        pyramid.invalidateFrom(300);
+        // a higher level than before is built from scratch
+        pyramid.update(levels, levels.getCount(), 8);
+        assertPyramid(levels, pyramid, 8);
+    }
+
+    private static void assertPyramid(ArrayLevels levels, LodPyramid pyramid, int maxLevel) {
+        for (int level = 1; level <= maxLevel; level++) {
+            int size = 1 << level;
+            int buckets = pyramid.getBucketCount(level);
+            assertEquals((levels.getCount() + size - 1) / size, buckets);
+            for (int b = 0; b < buckets; b++) {
+                float min = Float.POSITIVE_INFINITY;
+                float max = Float.NEGATIVE_INFINITY;
+                int end = Math.min(levels.getCount(), (b + 1) * size);
+                for (int i = b * size; i < end; i++) {
+                    min = Math.min(min, levels.getLevel(i));
+                    max = Math.max(max, levels.getLevel(i));
+                }
+                String where = "level " + level + ", bucket " + b;
+                int minIndex = pyramid.getMinIndex(level, b);
+                int maxIndex = pyramid.getMaxIndex(level, b);
+                assertEquals(where, min, levels.getLevel(minIndex), 0);
+                assertEquals(where, max, levels.getLevel(maxIndex), 0);
+                assertEquals(where, b, minIndex >> level);
+                assertEquals(where, b, maxIndex >> level);
+            }
+        }
+    }
+}
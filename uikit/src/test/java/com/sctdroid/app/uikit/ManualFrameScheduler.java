@@ -0,0 +1,36 @@
+package com.sctdroid.app.uikit;
+
+import java.util.ArrayList;
+
+/**
+ * {@link FrameScheduler} for unit tests, scheduled tasks run when the test calls {@link #runFrame()}.
+ */
+
+final class ManualFrameScheduler implements FrameScheduler {
+    private final ArrayList<Runnable> mTasks = new ArrayList<>();
+
+    @Override
+    public void schedule(Runnable task) {
+        mTasks.add(task);
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        mTasks.remove(task);
+    }
+
+    /**
+     * Runs the tasks scheduled so far, as the next frame would.
+     */
+    void runFrame() {
+        Runnable[] tasks = mTasks.toArray(new Runnable[mTasks.size()]);
+        mTasks.clear();
+        for (Runnable task : tasks) {
+            task.run();
+        }
+    }
+
+    boolean hasScheduled() {
+        return !mTasks.isEmpty();
+    }
+}
@@ -0,0 +1,116 @@
+package com.sctdroid.app.uikit;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link MappedSeries} files written to a temporary file and read back.
+ */
+public class MappedSeriesTest {
+
+    @Test
+    public void open_readsWhatWasWritten() throws Exception {
+        float[] levels = BenchmarkData.randomWalk(1000);
+        File file = File.createTempFile("series", ".cvs");
+        try {
+            // the first and the last 50 levels aren't written
+            MappedSeries.write(file, levels, 50, 900, -5, 105, false);
+            MappedSeries series = MappedSeries.open(file);
+            assertEquals(900, series.getCount());
+            assertEquals(-5, series.getMinLevel(), 0);
+            assertEquals(105, series.getMaxLevel(), 0);
+            assertEquals(0, series.getPyramidLevels());
+            for (int i = 0; i < 900; i++) {
+                assertEquals(levels[50 + i], series.getLevel(i), 0);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void open_readsThePyramid() throws Exception {
+        float[] levels = BenchmarkData.randomWalk(1000);
+        File file = File.createTempFile("series", ".cvs");
+        try {
+            MappedSeries.write(file, levels, 0, levels.length, 0, 100, true);
+            MappedSeries series = MappedSeries.open(file);
+            // up to a single bucket, 2^10 >= 1000
+            assertEquals(10, series.getPyramidLevels());
+
+            ArrayLevels expected = new ArrayLevels();
+            for (float level : levels) {
+                expected.add(level);
+            }
+            LodPyramid pyramid = new LodPyramid();
+            pyramid.update(expected, levels.length, 10);
+            for (int k = 1; k <= 10; k++) {
+                for (int b = 0; b < pyramid.getBucketCount(k); b++) {
+                    String where = "level " + k + ", bucket " + b;
+                    assertEquals(where, pyramid.getMinIndex(k, b), series.getMinIndex(k, b));
+                    assertEquals(where, pyramid.getMaxIndex(k, b), series.getMaxIndex(k, b));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void open_emptySeries() throws Exception {
+        File file = File.createTempFile("series", ".cvs");
+        try {
+            MappedSeries.write(file, new float[0], 0, 0, 0, 100, true);
+            MappedSeries series = MappedSeries.open(file);
+            assertEquals(0, series.getCount());
+            assertEquals(0, series.getPyramidLevels());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void open_rejectsOtherFiles() throws Exception {
+        File file = File.createTempFile("series", ".cvs");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(new byte[64]);
+            } finally {
+                out.close();
+            }
+            MappedSeries.open(file);
+            fail("opened a file without the magic");
+        } catch (IOException expected) {
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void open_rejectsTruncatedFiles() throws Exception {
+        float[] levels = BenchmarkData.randomWalk(100);
+        File file = File.createTempFile("series", ".cvs");
+        try {
+            MappedSeries.write(file, levels, 0, levels.length, 0, 100, true);
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(raf.length() - 4);
+            } finally {
+                raf.close();
+            }
+            MappedSeries.open(file);
+            fail("opened a truncated file");
+        } catch (IOException expected) {
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.sctdroid.app.uikit;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Segments with {@link MonotoneCubic} tangents stay between their end points and follow their direction.
+ */
+public class MonotoneCubicTest {
+    private static final int SAMPLES = 64;
+
+    @Test
+    public void tangent_flatAtExtremes() throws Exception {
+        assertEquals(0, MonotoneCubic.tangent(0, 10, 0), 0);
+        assertEquals(0, MonotoneCubic.tangent(10, 0, 10), 0);
+        assertEquals(0, MonotoneCubic.tangent(5, 5, 10), 0);
+        assertEquals(0, MonotoneCubic.tangent(Float.NaN, 5, Float.NaN), 0);
+    }
+
+    @Test
+    public void tangent_oneSidedAtEnds() throws Exception {
+        assertEquals(3, MonotoneCubic.tangent(Float.NaN, 2, 5), 0);
+        assertEquals(-4, MonotoneCubic.tangent(6, 2, Float.NaN), 0);
+    }
+
+    @Test
+    public void tangent_atMostTwiceTheSmallerSlope() throws Exception {
+        // harmonic mean of 1 and 100
+        assertEquals(200f / 101, MonotoneCubic.tangent(0, 1, 101), 1e-5f);
+        assertEquals(-200f / 101, MonotoneCubic.tangent(101, 1, 0), 1e-5f);
+    }
+
+    @Test
+    public void segments_neverOvershoot() throws Exception {
+        Random random = new Random(1);
+        float[] y = new float[2000];
+        for (int i = 0; i < y.length; i++) {
+            // steps of very different sizes, and plateaus, are where overshoot shows
+            y[i] = random.nextInt(4) == 0 ? (i > 0 ? y[i - 1] : 0) : random.nextFloat() * (random.nextBoolean() ? 1 : 1000);
+        }
+        for (int i = 1; i < y.length; i++) {
+            float m0 = MonotoneCubic.tangent(i > 1 ? y[i - 2] : Float.NaN, y[i - 1], y[i]);
+            float m1 = MonotoneCubic.tangent(y[i - 1], y[i], i + 1 < y.length ? y[i + 1] : Float.NaN);
+            assertMonotone(y[i - 1], m0, y[i], m1);
+        }
+    }
+
+    /**
+     * Samples the segment {@link MonotoneCubic#cubicTo} adds, a cubic Bezier with control points
+     * a third of the tangents from its ends.
+     */
+    private static void assertMonotone(float y0, float m0, float y1, float m1) {
+        float c0 = y0 + m0 / 3;
+        float c1 = y1 - m1 / 3;
+        float low = Math.min(y0, y1);
+        float high = Math.max(y0, y1);
+        float tolerance = 1e-4f * Math.max(1, Math.abs(high));
+        float previous = y0;
+        for (int s = 1; s <= SAMPLES; s++) {
+            float t = s / (float) SAMPLES;
+            float u = 1 - t;
+            float y = u * u * u * y0 + 3 * u * u * t * c0 + 3 * u * t * t * c1 + t * t * t * y1;
+            String where = "segment " + y0 + " -> " + y1 + " at " + t;
+            assertTrue(where, y >= low - tolerance && y <= high + tolerance);
+            assertTrue(where, y1 >= y0 ? y >= previous - tolerance : y <= previous + tolerance);
+            previous = y;
+        }
+    }
+}
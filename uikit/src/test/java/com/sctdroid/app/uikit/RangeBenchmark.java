@@ -0,0 +1,88 @@
+package com.sctdroid.app.uikit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the automatic level range: building {@link RangeTree}, keeping it up to date for a
+ * sliding window, and querying the range of the visible points while scrolling.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RangeBenchmark {
+    /**
+     * points in view, about a 1080px wide screen at the default unit width
+     */
+    private static final int VISIBLE = 1080 / 10;
+
+    @Param({"1000", "100000", "1000000"})
+    public int count;
+
+    private float[] mLevels;
+    private LevelColumns mColumns;
+    private RangeTree mTree;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        mLevels = BenchmarkData.randomWalk(count);
+        mColumns = BenchmarkData.columns(mLevels);
+        mTree = new RangeTree();
+        mTree.rebuild(mColumns, count);
+    }
+
+    @Benchmark
+    public RangeTree rebuild() {
+        mTree.rebuild(mColumns, count);
+        return mTree;
+    }
+
+    /**
+     * One point appended to and one evicted from a full window, as a StreamingSource does.
+     */
+    @Benchmark
+    public float slide() {
+        mTree.append(mLevels[mNext]);
+        mTree.removeFirst(1);
+        mNext = (mNext + 1) % count;
+        return mTree.getMax(0, mTree.size() - 1);
+    }
+
+    @Benchmark
+    public float queryVisible() {
+        int from = mNext;
+        mNext = (mNext + VISIBLE) % Math.max(1, count - VISIBLE);
+        return mTree.getMax(from, Math.min(count - 1, from + VISIBLE)) - mTree.getMin(from, Math.min(count - 1, from + VISIBLE));
+    }
+
+    /**
+     * The O(n) rescan the tree replaces.
+     */
+    @Benchmark
+    public float scan() {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            float level = mColumns.getLevel(i);
+            min = Math.min(min, level);
+            max = Math.max(max, level);
+        }
+        return max - min;
+    }
+}
@@ -0,0 +1,100 @@
+package com.sctdroid.app.uikit;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link RangeTree} against a linear scan of the same levels.
+ */
+public class RangeTreeTest {
+
+    @Test
+    public void rebuild_answersRanges() throws Exception {
+        ArrayLevels levels = ArrayLevels.random(new Random(1), 1000);
+        RangeTree tree = new RangeTree();
+        tree.rebuild(levels, levels.getCount());
+
+        Random random = new Random(2);
+        for (int i = 0; i < 1000; i++) {
+            int from = random.nextInt(levels.getCount());
+            int to = from + random.nextInt(levels.getCount() - from);
+            assertRange(levels, 0, tree, from, to);
+        }
+    }
+
+    @Test
+    public void slidingWindow_matchesScan() throws Exception {
+        Random random = new Random(3);
+        int capacity = 1000;
+        ArrayLevels levels = new ArrayLevels();
+        RangeTree tree = new RangeTree();
+        int head = 0;
+        for (int i = 0; i < 10 * capacity; i++) {
+            levels.add(random.nextFloat() * 100);
+            tree.append(levels.getLevel(levels.getCount() - 1));
+            if (levels.getCount() - head > capacity) {
+                tree.removeFirst(1);
+                head++;
+            }
+            assertEquals(levels.getCount() - head, tree.size());
+            int size = tree.size();
+            assertRange(levels, head, tree, 0, size - 1);
+            int from = random.nextInt(size);
+            assertRange(levels, head, tree, from, from + random.nextInt(size - from));
+        }
+    }
+
+    /**
+     * A full StreamingSource holds the appended level when it announces the eviction,
+     * so the tree is queried up to a position it doesn't have yet.
+     */
+    @Test
+    public void removeBeforeAppend_ignoresPositionsPastTheEnd() throws Exception {
+        int capacity = 1000;
+        ArrayLevels levels = ArrayLevels.random(new Random(4), capacity);
+        RangeTree tree = new RangeTree();
+        for (int i = 0; i < capacity; i++) {
+            tree.append(levels.getLevel(i));
+        }
+        for (int round = 0; round < 3 * capacity; round++) {
+            tree.removeFirst(1);
+            assertRange(levels, round + 1, tree, 0, capacity - 2);
+            assertEquals(tree.getMin(0, capacity - 2), tree.getMin(0, capacity - 1), 0);
+            assertEquals(tree.getMax(0, capacity - 2), tree.getMax(0, capacity - 1), 0);
+
+            levels.add(levels.getLevel(round) + 1);
+            tree.append(levels.getLevel(levels.getCount() - 1));
+            assertRange(levels, round + 1, tree, 0, capacity - 1);
+        }
+    }
+
+    @Test
+    public void set_updatesRanges() throws Exception {
+        ArrayLevels levels = ArrayLevels.random(new Random(5), 100);
+        RangeTree tree = new RangeTree();
+        tree.rebuild(levels, levels.getCount());
+        levels.set(42, 1000);
+        tree.set(42, 1000);
+        levels.set(7, -1000);
+        tree.set(7, -1000);
+        assertRange(levels, 0, tree, 0, 99);
+        assertRange(levels, 0, tree, 43, 99);
+    }
+
+    /**
+     * Compares a tree query with a scan of levels, tree position 0 being level head.
+     */
+    private static void assertRange(ArrayLevels levels, int head, RangeTree tree, int from, int to) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = from; i <= to; i++) {
+            min = Math.min(min, levels.getLevel(head + i));
+            max = Math.max(max, levels.getLevel(head + i));
+        }
+        assertEquals("min of [" + from + ", " + to + "]", min, tree.getMin(from, to), 0);
+        assertEquals("max of [" + from + ", " + to + "]", max, tree.getMax(from, to), 0);
+    }
+}
@@ -0,0 +1,32 @@
+package com.sctdroid.app.uikit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the notifications it receives as strings, e.g. "removed 0 5", for comparing them in tests.
+ */
+
+final class RecordingObserver implements DataObserver {
+    final List<String> mCalls = new ArrayList<>();
+
+    @Override
+    public void onChanged() {
+        mCalls.add("changed");
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        mCalls.add("changed " + positionStart + " " + itemCount);
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        mCalls.add("inserted " + positionStart + " " + itemCount);
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        mCalls.add("removed " + positionStart + " " + itemCount);
+    }
+}
@@ -0,0 +1,103 @@
+package com.sctdroid.app.uikit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link StreamingSource} publishing appended levels once per frame and evicting the oldest ones.
+ */
+public class StreamingSourceTest {
+    private StreamingSource mSource;
+    private ManualFrameScheduler mScheduler;
+    private RecordingObserver mObserver;
+
+    @Before
+    public void setUp() throws Exception {
+        mSource = new StreamingSource(5);
+        mScheduler = new ManualFrameScheduler();
+        mSource.setFrameScheduler(mScheduler);
+        mObserver = new RecordingObserver();
+        mSource.registerDataSetObserver(mObserver);
+    }
+
+    @Test
+    public void append_publishedInTheNextFrame() throws Exception {
+        mSource.append(1);
+        mSource.appendAll(new float[] {2, 3});
+        assertEquals(0, mSource.getCount());
+        assertEquals(Collections.emptyList(), mObserver.mCalls);
+
+        mScheduler.runFrame();
+        assertLevels(1, 2, 3);
+        assertEquals(Arrays.asList("inserted 0 3"), mObserver.mCalls);
+    }
+
+    @Test
+    public void append_evictsTheOldestOnceFull() throws Exception {
+        mSource.appendAll(new float[] {1, 2, 3});
+        mScheduler.runFrame();
+        mObserver.mCalls.clear();
+
+        mSource.appendAll(new float[] {4, 5, 6, 7});
+        mScheduler.runFrame();
+        assertLevels(3, 4, 5, 6, 7);
+        assertEquals(Arrays.asList("removed 0 2", "inserted 1 4"), mObserver.mCalls);
+
+        // around the end of the ring
+        for (int i = 8; i <= 13; i++) {
+            mObserver.mCalls.clear();
+            mSource.append(i);
+            mScheduler.runFrame();
+            assertEquals(Arrays.asList("removed 0 1", "inserted 4 1"), mObserver.mCalls);
+        }
+        assertLevels(9, 10, 11, 12, 13);
+    }
+
+    @Test
+    public void append_batchLargerThanTheCapacity() throws Exception {
+        mSource.appendAll(new float[] {1, 2, 3});
+        mScheduler.runFrame();
+        mObserver.mCalls.clear();
+
+        // 4 and 5 are pushed out by the same batch and never published
+        mSource.appendAll(new float[] {9, 4, 5, 6, 7, 8, 9, 10, 9}, 1, 7);
+        mScheduler.runFrame();
+        assertLevels(6, 7, 8, 9, 10);
+        assertEquals(Arrays.asList("removed 0 3", "inserted 0 5"), mObserver.mCalls);
+    }
+
+    @Test
+    public void appendAll_widensIntLevels() throws Exception {
+        mSource.appendAll(new int[] {1, 2});
+        mSource.appendAll(new int[] {0, 3, 4, 0}, 1, 2);
+        mScheduler.runFrame();
+        assertLevels(1, 2, 3, 4);
+    }
+
+    @Test
+    public void clear_dropsUnpublishedLevels() throws Exception {
+        mSource.appendAll(new float[] {1, 2});
+        mScheduler.runFrame();
+        mSource.append(3);
+        mSource.clear();
+        mScheduler.runFrame();
+        assertEquals(0, mSource.getCount());
+        assertEquals(Arrays.asList("inserted 0 2", "changed"), mObserver.mCalls);
+
+        mSource.append(4);
+        mScheduler.runFrame();
+        assertLevels(4);
+    }
+
+    private void assertLevels(float... levels) {
+        assertEquals(levels.length, mSource.getCount());
+        for (int i = 0; i < levels.length; i++) {
+            assertEquals("level " + i, levels[i], mSource.getLevel(i), 0);
+        }
+    }
+}
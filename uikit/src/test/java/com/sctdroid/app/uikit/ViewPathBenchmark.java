@@ -0,0 +1,209 @@
+package com.sctdroid.app.uikit;
+
+import android.graphics.Path;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of what {@link CurveView} does between the data and the canvas: reading an adapter on a
+ * data change, projecting levels to y, building the path window, and the per frame work of
+ * scrolling, culling and placing texts. The adapter and the path are fakes, so the path costs
+ * only the Java side, not the native one of a real {@link Path}.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ViewPathBenchmark {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 720;
+    /**
+     * the default unit width
+     */
+    private static final float UNIT_WIDTH = 10;
+    private static final int SCROLL_STEP = 37;
+
+    @Param({"1000", "100000", "1000000"})
+    public int count;
+
+    private FakeAdapter mAdapter;
+    private LevelColumns mColumns;
+    private float[] mProjectedY;
+    private RecordingPath mPath;
+    private float[] mTextWidths;
+    private int mContentWidth;
+    private int mOffset;
+
+    @Setup
+    public void setUp() {
+        float[] levels = BenchmarkData.randomWalk(count);
+        mAdapter = new FakeAdapter(levels);
+        mColumns = BenchmarkData.columns(levels);
+        mProjectedY = new float[count];
+        CurveGeometry.project(mColumns, 0, count, HEIGHT, 0, HEIGHT / 100f, mProjectedY);
+        mPath = new RecordingPath();
+        mTextWidths = new float[64];
+        for (int i = 0; i < mTextWidths.length; i++) {
+            mTextWidths[i] = 20 + i % 7 * 11;
+        }
+        mContentWidth = (int) ((count - 1) * UNIT_WIDTH);
+    }
+
+    /**
+     * Reading every level from an adapter and building the range tree, as a data set change does.
+     */
+    @Benchmark
+    public RangeTree updateAdapterData() {
+        CurveView.AdapterColumns columns = new CurveView.AdapterColumns(mAdapter);
+        columns.loadAll();
+        RangeTree tree = new RangeTree();
+        tree.rebuild(columns, count);
+        return tree;
+    }
+
+    @Benchmark
+    public float[] project() {
+        float pixelsPerLevel = CurveGeometry.getPixelsPerLevel(HEIGHT, 0, 100);
+        CurveGeometry.project(mColumns, 0, count, HEIGHT, 0, pixelsPerLevel, mProjectedY);
+        return mProjectedY;
+    }
+
+    /**
+     * The path window, the visible points and a screen on each side, as a polyline.
+     */
+    @Benchmark
+    public RecordingPath buildPath() {
+        return buildWindow(false);
+    }
+
+    @Benchmark
+    public RecordingPath buildSmoothPath() {
+        return buildWindow(true);
+    }
+
+    private RecordingPath buildWindow(boolean smooth) {
+        int first = CurveGeometry.getFirstVisible(-mOffset, UNIT_WIDTH);
+        int last = CurveGeometry.getLastVisible(-mOffset + WIDTH, UNIT_WIDTH, count);
+        int span = last - first;
+        int start = Math.max(0, first - span);
+        int end = Math.min(count - 1, last + span);
+        CurveGeometry.buildPath(mPath, mProjectedY, count, start, end, UNIT_WIDTH, smooth);
+        mOffset = nextOffset();
+        return mPath;
+    }
+
+    /**
+     * A scroll frame: the offset clamped to the content and the points to draw culled to the viewport.
+     */
+    @Benchmark
+    public int checkOffsetAndCull() {
+        mOffset = nextOffset();
+        int first = CurveGeometry.getFirstVisible(-mOffset, UNIT_WIDTH);
+        int last = CurveGeometry.getLastVisible(-mOffset + WIDTH, UNIT_WIDTH, count);
+        return last - first;
+    }
+
+    /**
+     * Placing an x axis text and a mark at every visible point, with widths already measured.
+     */
+    @Benchmark
+    public int textOffsets() {
+        int first = CurveGeometry.getFirstVisible(-mOffset, UNIT_WIDTH);
+        int last = CurveGeometry.getLastVisible(-mOffset + WIDTH, UNIT_WIDTH, count);
+        int sum = 0;
+        for (int i = first; i <= last; i++) {
+            float width = mTextWidths[i & (mTextWidths.length - 1)];
+            sum += CurveGeometry.getTextOffsetX(width, CurveView.Gravity.CENTER_HORIZONTAL);
+            sum += CurveGeometry.getTextOffsetX(width, CurveView.Gravity.START)
+                    + CurveGeometry.getTextOffsetY(-28, 7, CurveView.Gravity.BOTTOM);
+        }
+        mOffset = nextOffset();
+        return sum;
+    }
+
+    private int nextOffset() {
+        int offset = mOffset - SCROLL_STEP;
+        if (offset < WIDTH - mContentWidth) {
+            offset = 0;
+        }
+        return CurveGeometry.clampOffset(offset, mContentWidth, WIDTH);
+    }
+
+    static final class FakeAdapter extends CurveView.Adapter {
+        private final float[] mLevels;
+
+        FakeAdapter(float[] levels) {
+            mLevels = levels;
+        }
+
+        @Override
+        public int getCount() {
+            return mLevels.length;
+        }
+
+        @Override
+        public int getLevel(int position) {
+            return (int) mLevels[position];
+        }
+
+        @Override
+        public float getFloatLevel(int position) {
+            return mLevels[position];
+        }
+    }
+
+    /**
+     * Keeps the coordinates of path commands in an array, in place of the native path.
+     */
+    static final class RecordingPath extends Path {
+        private float[] mCoords = new float[1024];
+        private int mSize;
+
+        @Override
+        public void rewind() {
+            mSize = 0;
+        }
+
+        @Override
+        public void moveTo(float x, float y) {
+            add(x, y);
+        }
+
+        @Override
+        public void lineTo(float x, float y) {
+            add(x, y);
+        }
+
+        @Override
+        public void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+            add(x1, y1);
+            add(x2, y2);
+            add(x3, y3);
+        }
+
+        private void add(float x, float y) {
+            if (mSize + 2 > mCoords.length) {
+                float[] coords = new float[mCoords.length * 2];
+                System.arraycopy(mCoords, 0, coords, 0, mSize);
+                mCoords = coords;
+            }
+            mCoords[mSize++] = x;
+            mCoords[mSize++] = y;
+        }
+    }
+}